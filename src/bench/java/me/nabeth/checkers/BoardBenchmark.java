@@ -0,0 +1,109 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The {@code BoardBenchmark} class measures the throughput of the board
+ * operations the search is built on, from both the {@code Board} used by the
+ * rest of the program and the {@code BitBoard} used by the search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BoardBenchmark {
+    @Param({ Positions.START, Positions.MIDDLEGAME, Positions.KINGS })
+    public String fen;
+
+    private Board board;
+    private BitBoard bitBoard;
+    private Move move;
+    private int packedMove;
+    private int[] moves;
+
+    @Setup
+    public void setUp() {
+        this.bitBoard = BitBoard.fromFen(this.fen);
+        this.board = new Board(Player.PLAYER2, this.bitBoard);
+        this.moves = new int[BitBoard.MAX_MOVES];
+        this.bitBoard.genMoves(this.moves);
+        this.packedMove = this.moves[0];
+        this.move = BitBoard.toMove(this.packedMove);
+    }
+
+    @Benchmark
+    public Board copy() {
+        return new Board(this.board);
+    }
+
+    @Benchmark
+    public Set<Move> getLegalMoves() {
+        return this.board.getLegalMoves();
+    }
+
+    /**
+     * Performs a move on a copy of the board, so it includes the time of
+     * {@link #copy()}.
+     */
+    @Benchmark
+    public Board perform() {
+        Board copy = new Board(this.board);
+        copy.perform(this.move);
+        return copy;
+    }
+
+    @Benchmark
+    public int heuristic() {
+        return this.board.heuristic();
+    }
+
+    @Benchmark
+    public int genMoves() {
+        return this.bitBoard.genMoves(this.moves);
+    }
+
+    @Benchmark
+    public void performAndUndo(Blackhole blackhole) {
+        int record = this.bitBoard.perform(this.packedMove);
+        blackhole.consume(this.bitBoard.getKey());
+        this.bitBoard.undo(this.packedMove, record);
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return this.bitBoard.evaluate();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code DecideBenchmark} class measures how long the {@code AI} takes to
+ * decide on a move at each difficulty. The transposition table is cleared
+ * before each decision, so every decision starts from scratch as the first
+ * move of a game does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecideBenchmark {
+    @Param({ "1", "2", "3", "4", "5", "6", "7", "8" })
+    public int difficulty;
+
+    @Param({ Positions.START, Positions.MIDDLEGAME, Positions.KINGS })
+    public String fen;
+
+    private AI ai;
+    private Board board;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.ai = new AI(this.difficulty);
+        this.ai.useOpeningBook(null);
+        this.board = new Board(Player.PLAYER2, BitBoard.fromFen(this.fen));
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        this.ai.newGame();
+    }
+
+    @Benchmark
+    public Move decide() {
+        return this.ai.decide(this.board);
+    }
+}
\ No newline at end of file
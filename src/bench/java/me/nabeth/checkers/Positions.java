@@ -0,0 +1,31 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+/**
+ * The {@code Positions} final class contains the fixed set of boards the
+ * benchmarks are run on, described in FEN.
+ */
+public final class Positions {
+    public static final String START = "B:W21-32:B1-12";
+    public static final String MIDDLEGAME = "B:W5,6,7,13,14,15,22,23:B19,26,27,K30";
+    public static final String KINGS = "W:W18,24,27,28,K10,K15:B12,16,20,K22,K25,K29";
+
+    private Positions() {
+    }
+}
\ No newline at end of file
@@ -18,8 +18,8 @@
 package me.nabeth.checkers;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
-import java.util.Set;
 
 import javax.imageio.ImageIO;
 
@@ -28,63 +28,61 @@ import javax.imageio.ImageIO;
  * profile, depth, and decision making algorithm.
  */
 public class AI {
+    public static final int TABLE_MEGABYTES = 32;
+    public static final int THREADS = 1;
+    private static final int MOVES_TO_GO = 30;
+
     private Profile profile;
     private int depth;
+    private int[] moves;
+    private TranspositionTable table;
+    private SearchParameters parameters; // shared by all threads
+    private Evaluator evaluator; // shared by all threads
+    private Search[] searches; // one per thread, the first being the main thread
+    private SplitSearch splitSearch;
+    private OpeningBook book;
+    private int lastMove; // decided by searching, or 0
+    private Thread ponderer;
+    private long ponderKey; // of the board pondered on
+    private volatile int ponderMove;
 
     public AI(int depth) throws IOException {
-        this.depth = depth;
-        String username = "Pepe the Frog";
-        int rating = 300 * depth;
-        BufferedImage avatar = ImageIO.read(this.getClass().getResource(Resources.AI_AVATAR));
-        this.profile = new Profile(username, rating, avatar);
+        this(depth, AI.TABLE_MEGABYTES, AI.THREADS);
     }
 
     /**
-     * Returns the evaluation of the board based on the player turn and its
-     * children.
+     * Creates an AI that searches with several threads sharing one transposition
+     * table.
      * 
-     * @param board the board state being searched
-     * @param depth the remaining number of levels in the search tree
-     * @param alpha the evaluation of the board resulted from the best move by the
-     *              AI
-     * @param beta  the evaluation of the board resulted from the best move by the
-     *              opponent
-     * @return a more positive {@code int} if the evaluation of the board is
-     *         favorable towards the AI, otherwise a more negative {@code int} if
-     *         the evaluation of the board is favorable towards the opponent
-     */
-    private int minimax(Board board, int depth, int alpha, int beta) {
-        if ((depth == 0) || (board.gameIsOver())) {
-            return board.heuristic();
-        }
-
-        if (board.isPlayersTurn()) {
-            int minEval = Integer.MAX_VALUE;
-            for (Move legalMove : board.getLegalMoves()) {
-                Board child = new Board(board);
-                child.perform(legalMove);
-                int eval = minimax(child, depth - 1, alpha, beta);
-                minEval = Math.min(minEval, eval);
-                beta = Math.min(beta, eval);
-                if (beta <= alpha) { // prune the search
-                    break;
-                }
-            }
-            return minEval;
-
-        } else {
-            int maxEval = Integer.MIN_VALUE;
-            for (Move legalMove : board.getLegalMoves()) {
-                Board child = new Board(board);
-                child.perform(legalMove);
-                int eval = minimax(child, depth - 1, alpha, beta);
-                maxEval = Math.max(maxEval, eval);
-                beta = Math.max(beta, eval);
-                if (beta <= alpha) { // prune the search
-                    break;
-                }
-            }
-            return maxEval;
+     * @param depth          the maximum depth of the search
+     * @param tableMegabytes the memory budget of the transposition table
+     * @param threads        the number of threads searching each board
+     * @throws IOException if a resource file of the AI cannot be read
+     */
+    public AI(int depth, int tableMegabytes, int threads) throws IOException {
+        this.depth = depth;
+        this.moves = new int[BitBoard.MAX_MOVES];
+        this.table = new TranspositionTable(tableMegabytes);
+        this.parameters = new SearchParameters();
+        this.evaluator = Evaluator.DEFAULT;
+        this.searches = new Search[Math.max(threads, 1)];
+        for (int i = 0; i < this.searches.length; i++) {
+            this.searches[i] = new Search(this.table, this.parameters);
+        }
+        File book = new File(Resources.PATH + Resources.OPENING_BOOK);
+        if (book.isFile()) {
+            this.useOpeningBook(new OpeningBook(book));
+        }
+        File endgames = new File(Resources.PATH + Resources.ENDGAME_DATABASES);
+        if (endgames.isDirectory()) {
+            this.useEndgameDatabase(new EndgameDatabase(endgames, EndgameDatabase.CACHE_MEGABYTES));
+        }
+        File weights = new File(Resources.PATH + Resources.EVALUATION_WEIGHTS);
+        File network = new File(Resources.PATH + Resources.NEURAL_NETWORK);
+        if (weights.isFile() || network.isFile()) {
+            this.useEvaluator(new Evaluator(
+                    weights.isFile() ? new EvaluationWeights(weights.getPath()) : new EvaluationWeights(),
+                    network.isFile() ? new NeuralNetwork(network) : null));
         }
     }
 
@@ -96,25 +94,478 @@ public class AI {
      * @return a {@code Move} to be performed
      */
     public Move decide(Board board) {
-        int maxEval = Integer.MIN_VALUE;
-        Move move = null;
-        Set<Move> legalMoves = board.getLegalMoves();
-        if (legalMoves.size() == 1) { // no searching needed
-            return legalMoves.iterator().next();
-        }
-        for (Move legalMove : legalMoves) {
-            Board child = new Board(board);
-            child.perform(legalMove);
-            int eval = minimax(child, this.depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
-            if (eval > maxEval) {
-                move = legalMove;
-                maxEval = eval;
+        return this.decide(board, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the most favorable move the AI can play within its share of the
+     * time left on its timer.
+     * 
+     * @param board the board state that the AI has to perform a move on
+     * @param timer the timer of the AI
+     * @return a {@code Move} to be performed
+     */
+    public Move decide(Board board, Timer timer) {
+        return this.decide(board, timer.getTimeLeft());
+    }
+
+    /**
+     * Returns the most favorable move the AI can play within its share of the
+     * time left for the rest of the game.
+     * 
+     * @param board    the board state that the AI has to perform a move on
+     * @param timeLeft the time left for the rest of the game in milliseconds
+     * @return a {@code Move} to be performed
+     */
+    public Move decide(Board board, long timeLeft) {
+        return BitBoard.toMove(this.decide(board.getBitBoard(), timeLeft));
+    }
+
+    /**
+     * Returns the most favorable move the AI can play by searching one level
+     * deeper at a time up to the specified depth. Searching stops at the deadline
+     * derived from the time left, in which case the move from the deepest
+     * completed search is returned.
+     * <p>
+     * Any helper threads search the same board at the same time, starting at
+     * staggered depths, and only contribute through the shared transposition
+     * table. The main thread decides the move and stops the helpers when it is
+     * done.
+     * 
+     * @param board    the board that the AI has to perform a move on, which is
+     *                 left unchanged
+     * @param timeLeft the time left for the rest of the game in milliseconds
+     * @return the packed move to be performed
+     */
+    public int decide(BitBoard board, long timeLeft) {
+        BitBoard root = new BitBoard(board);
+
+        // allocate time for this move
+        long budget = timeLeft / AI.MOVES_TO_GO;
+        long[] deadlines = AI.getDeadlines(timeLeft);
+        long softDeadline = deadlines[0];
+        long deadline = deadlines[1];
+
+        // keep the pondering search if the predicted reply was played
+        if (this.ponderer != null) {
+            boolean isPonderHit = root.getKey() == this.ponderKey;
+            if (isPonderHit) {
+                this.setDeadlines(softDeadline, deadline);
+            }
+            int move = this.finishPondering(isPonderHit);
+            if (isPonderHit && (move != 0)) {
+                this.lastMove = move;
+                return move;
+            }
+        }
+
+        this.lastMove = 0;
+        int count = root.genMoves(this.moves);
+        if (count == 1) { // no searching needed
+            return this.moves[0];
+        }
+        if (this.book != null) {
+            int move = this.book.probe(root);
+            if (move != 0) {
+                return move;
+            }
+        }
+        if (this.splitSearch != null) {
+            return this.iterateSplit(root, budget, deadline);
+        }
+
+        this.table.nextSearch();
+        int move = this.search(root, this.depth, softDeadline, deadline);
+        if (move == 0) {
+            move = this.moves[0];
+        }
+        this.lastMove = move;
+        return move;
+    }
+
+    /**
+     * Returns the deadlines of the search for a move, as the system times in
+     * milliseconds after which no deeper search is started and after which
+     * searching stops, given the time left for the rest of the game.
+     *
+     * @param timeLeft the time left in milliseconds, or {@code Long.MAX_VALUE}
+     *                 if it is unlimited
+     * @return the soft deadline followed by the deadline
+     */
+    public static long[] getDeadlines(long timeLeft) {
+        if (timeLeft == Long.MAX_VALUE) {
+            return new long[] { Long.MAX_VALUE, Long.MAX_VALUE };
+        }
+        long budget = timeLeft / AI.MOVES_TO_GO;
+        long startTime = System.currentTimeMillis();
+        return new long[] { startTime + budget / 2, startTime + Math.min(3 * budget, timeLeft / 4) };
+    }
+
+    /**
+     * Searches a board within explicit limits without consulting the opening
+     * book, for driving the AI through an engine protocol. The search can be
+     * ended early from another thread with {@link #stop()}, and each depth it
+     * completes is reported to the listener of the AI.
+     *
+     * @param board        the board to be searched, which is left unchanged
+     * @param maxDepth     the depth of the deepest search
+     * @param softDeadline the system time after which no deeper search is
+     *                     started, in milliseconds
+     * @param deadline     the system time at which searching stops, in
+     *                     milliseconds
+     * @param nodeLimit    the number of boards after which searching stops
+     * @return the packed best move, or {@code 0} if the board has no moves
+     */
+    public int analyze(BitBoard board, int maxDepth, long softDeadline, long deadline, long nodeLimit) {
+        this.stopPondering();
+        BitBoard root = new BitBoard(board);
+        int count = root.genMoves(this.moves);
+        if (count == 0) {
+            return 0;
+        }
+        int firstMove = this.moves[0];
+        this.table.nextSearch();
+        this.searches[0].setNodeLimit(nodeLimit);
+        int move = this.search(root, maxDepth, softDeadline, deadline);
+        this.searches[0].setNodeLimit(Long.MAX_VALUE);
+        return (move == 0) ? firstMove : move;
+    }
+
+    /**
+     * Stops the search in progress as soon as possible, its best move so far
+     * being returned.
+     */
+    public void stop() {
+        for (Search search : this.searches) {
+            search.stop();
+        }
+    }
+
+    /**
+     * Makes the main thread report each completed depth of the following
+     * searches.
+     *
+     * @param listener the listener, or {@code null} to report nothing
+     */
+    public void setSearchListener(SearchListener listener) {
+        this.searches[0].setListener(listener);
+    }
+
+    /**
+     * Returns the best move found by searching a board with every thread until
+     * the main thread is done.
+     */
+    private int search(BitBoard root, int maxDepth, long softDeadline, long deadline) {
+        this.prepare(root, softDeadline, deadline);
+        return this.search(maxDepth);
+    }
+
+    /**
+     * Sets up every thread to search a board, on the calling thread so that the
+     * deadlines set or stops made afterwards are never overwritten.
+     */
+    private void prepare(BitBoard root, long softDeadline, long deadline) {
+        this.searches[0].prepare(root, softDeadline, deadline);
+        for (int i = 1; i < this.searches.length; i++) {
+            this.searches[i].prepare(root, Long.MAX_VALUE, deadline);
+        }
+    }
+
+    /**
+     * Returns the best move found by searching the prepared board with every
+     * thread until the main thread is done.
+     */
+    private int search(final int maxDepth) {
+        // start helper threads
+        Thread[] helpers = new Thread[this.searches.length - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            final Search helper = this.searches[i + 1];
+            final int startDepth = 1 + (i + 1) % 2;
+            helpers[i] = new Thread() {
+                @Override
+                public void run() {
+                    helper.iterate(startDepth, maxDepth);
+                }
+            };
+            helpers[i].start();
+        }
+
+        int move = this.searches[0].iterate(1, maxDepth);
+
+        // stop helper threads
+        for (int i = 0; i < helpers.length; i++) {
+            this.searches[i + 1].stop();
+        }
+        try {
+            for (Thread helper : helpers) {
+                helper.join();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
         return move;
     }
 
-    public Profile getProfile() {
+    private void setDeadlines(long softDeadline, long deadline) {
+        this.searches[0].setDeadlines(softDeadline, deadline);
+        for (int i = 1; i < this.searches.length; i++) {
+            this.searches[i].setDeadlines(Long.MAX_VALUE, deadline);
+        }
+    }
+
+    /**
+     * Starts searching in the background, on the opponent's time, the board
+     * reached if the opponent plays the reply expected by the last decision. If
+     * the opponent does play it, the next decision carries on with this search,
+     * otherwise the search is stopped. Either way its results are kept in the
+     * transposition table.
+     * 
+     * @param board the board state after the move of the AI
+     */
+    public void ponder(Board board) {
+        this.stopPondering();
+        int[] line = this.searches[0].getPrincipalVariation();
+        if ((this.splitSearch != null) || (this.lastMove == 0) || (line.length < 2) || (line[0] != this.lastMove)) {
+            return; // no reply expected
+        }
+        BitBoard root = new BitBoard(board.getBitBoard());
+        int count = root.genMoves(this.moves);
+        boolean isLegal = false;
+        for (int i = 0; i < count; i++) {
+            isLegal |= this.moves[i] == line[1];
+        }
+        if (!isLegal) {
+            return;
+        }
+        root.perform(line[1]);
+        if (!root.hasMoves()) {
+            return;
+        }
+
+        this.ponderKey = root.getKey();
+        this.table.nextSearch();
+        this.prepare(root, Long.MAX_VALUE, Long.MAX_VALUE); // before the deadlines of a ponder hit are set
+        this.ponderer = new Thread() {
+            @Override
+            public void run() {
+                AI.this.ponderMove = AI.this.search(AI.this.depth);
+            }
+        };
+        this.ponderer.setDaemon(true);
+        this.ponderer.start();
+    }
+
+    /**
+     * Stops searching in the background, if the AI is pondering.
+     */
+    public void stopPondering() {
+        this.finishPondering(false);
+    }
+
+    /**
+     * Waits for the search in the background to finish, stopping it first unless
+     * the opponent played the expected reply.
+     * 
+     * @return the packed best move found for the board pondered on, or {@code 0}
+     *         if there is none
+     */
+    private int finishPondering(boolean isPonderHit) {
+        if (this.ponderer == null) {
+            return 0;
+        }
+        if (!isPonderHit) {
+            for (Search search : this.searches) {
+                search.stop();
+            }
+        }
+        try {
+            this.ponderer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.ponderer = null;
+        return this.ponderMove;
+    }
+
+    /**
+     * Returns the best move found by searching one level deeper at a time with
+     * the split-point search.
+     */
+    private int iterateSplit(BitBoard root, long budget, long deadline) {
+        long startTime = System.currentTimeMillis();
+        int move = this.moves[0];
+        for (int depth = 1; depth <= this.depth; depth++) {
+            int result = this.splitSearch.search(root, depth, move, deadline);
+            if (result == 0) {
+                break;
+            }
+            move = result;
+            // the next search would not finish within the budget
+            if (System.currentTimeMillis() - startTime >= budget / 2) {
+                break;
+            }
+        }
+        return move;
+    }
+
+    /**
+     * Makes this AI search with a fork/join pool that splits the search at each
+     * node between its threads, instead of having the threads share the
+     * transposition table.
+     * 
+     * @param threads the number of threads in the pool, or {@code 0} to go back
+     *                to the shared transposition table
+     */
+    public void useSplitSearch(int threads) {
+        if (this.splitSearch != null) {
+            this.splitSearch.shutdown();
+            this.splitSearch = null;
+        }
+        if (threads > 0) {
+            this.splitSearch = new SplitSearch(threads);
+            this.splitSearch.setEvaluator(this.evaluator);
+        }
+    }
+
+    /**
+     * Makes this AI play the moves of an opening book without searching while the
+     * board is in the book. The book in the resource directory is used by default
+     * if it exists.
+     * 
+     * @param book the opening book, or {@code null} to search every board
+     */
+    public void useOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Makes this AI look up boards with few pieces in endgame databases instead
+     * of searching them. The databases in the endgame resource directory are
+     * used by default if it exists.
+     * 
+     * @param database the endgame databases, or {@code null} to search every
+     *                 board
+     */
+    public void useEndgameDatabase(EndgameDatabase database) {
+        for (Search search : this.searches) {
+            search.setEndgameDatabase(database);
+        }
+    }
+
+    /**
+     * Makes this AI evaluate boards with an evaluator of its own, leaving the
+     * evaluation of other AIs unchanged. The weights and network in the
+     * resource directory are used by default if they exist.
+     * 
+     * @param evaluator the evaluator
+     */
+    public void useEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        for (Search search : this.searches) {
+            search.setEvaluator(evaluator);
+        }
+        if (this.splitSearch != null) {
+            this.splitSearch.setEvaluator(evaluator);
+        }
+    }
+
+    /**
+     * Returns the evaluator of this AI.
+     */
+    public Evaluator getEvaluator() {
+        return this.evaluator;
+    }
+
+    /**
+     * Returns the number of boards searched by all threads during the last
+     * decision.
+     */
+    public long getNodes() {
+        long nodes = 0;
+        for (Search search : this.searches) {
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the number of boards searched by all threads during the last
+     * decision while resolving captures at the horizon.
+     */
+    public long getQuiescenceNodes() {
+        long nodes = 0;
+        for (Search search : this.searches) {
+            nodes += search.getQuiescenceNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the share of the pruned boards during the last decision that were
+     * pruned by the first move searched, which measures the move ordering.
+     * 
+     * @return a {@code double} between 0 and 1
+     */
+    public double getFirstMoveCutoffRate() {
+        long cutoffs = 0;
+        long firstMoveCutoffs = 0;
+        for (Search search : this.searches) {
+            cutoffs += search.getCutoffs();
+            firstMoveCutoffs += search.getFirstMoveCutoffs();
+        }
+        return (cutoffs == 0) ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Returns the evaluation of the board from the perspective of the AI found by
+     * the main thread during the last decision.
+     */
+    public int getScore() {
+        return this.searches[0].getScore();
+    }
+
+    /**
+     * Returns the line of play the AI expected during the last decision, starting
+     * with its own move, as found by the main thread.
+     */
+    public Move[] getPrincipalVariation() {
+        int[] line = this.searches[0].getPrincipalVariation();
+        Move[] moves = new Move[line.length];
+        for (int i = 0; i < line.length; i++) {
+            moves[i] = BitBoard.toMove(line[i]);
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the thresholds of the selective search, which may be changed
+     * between decisions.
+     */
+    public SearchParameters getSearchParameters() {
+        return this.parameters;
+    }
+
+    /**
+     * Forgets the board states searched during the previous game.
+     */
+    public void newGame() {
+        this.stopPondering();
+        this.table.clear();
+    }
+
+    /**
+     * Returns the profile of the AI, which is only created when first needed so
+     * that an AI playing without a user interface never reads its avatar.
+     *
+     * @throws IOException if the avatar of the AI cannot be read
+     */
+    public Profile getProfile() throws IOException {
+        if (this.profile == null) {
+            String username = "Pepe the Frog";
+            int rating = 300 * this.depth;
+            BufferedImage avatar = ImageIO.read(this.getClass().getResource(Resources.AI_AVATAR));
+            this.profile = new Profile(username, rating, avatar);
+        }
         return this.profile;
     }
 }
\ No newline at end of file
@@ -0,0 +1,955 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The {@code BitBoard} class encapsulates the state of a checkers board as
+ * three 32-bit masks over the playable squares, which are numbered from the
+ * upper-left corner of the board as in {@link Position#toByte()}. Moves are
+ * generated with shifts of whole masks and packed into {@code int}s, a
+ * multiple capture being a single move that records the direction of each of
+ * its jumps. Each state is identified by a 64-bit Zobrist key that is updated
+ * along with the masks.
+ */
+public class BitBoard {
+    public static final int SQUARES = 32;
+    public static final int MAX_MOVES = 128;
+    public static final int UP_LEFT = 0, UP_RIGHT = 1, DOWN_LEFT = 2, DOWN_RIGHT = 3;
+
+    // squares on rows 0, 2, 4, 6 and on rows 1, 3, 5, 7
+    private static final int EVEN_ROWS = 0x0F0F0F0F, ODD_ROWS = 0xF0F0F0F0;
+    // squares that are not on the left edge of an odd row or right edge of an even row
+    private static final int NOT_LEFT = ODD_ROWS & ~0x10101010, NOT_RIGHT = EVEN_ROWS & ~0x08080808;
+    private static final int[] PROMOTION_ROWS = { 0x0000000F, 0xF0000000 };
+    private static final int[][] STEPS = new int[4][BitBoard.SQUARES];
+
+    // packed move layout; every square a capture jumps over lies within the
+    // inner 6x6 squares and on the same alternate rows and columns, of which
+    // there are only 9, so no capture can make more jumps than that
+    public static final int MAX_JUMPS = 9;
+    private static final int SQUARE_MASK = 0x1F;
+    private static final int DEST_SHIFT = 5, JUMPS_SHIFT = 10, DIRS_SHIFT = 14;
+
+    // undo record layout, with a captured king flag for each jump
+    private static final int PROMOTED = 1 << BitBoard.MAX_JUMPS;
+    private static final int LAST_DEST_SHIFT = 10, SIDE_SHIFT = 16;
+
+    // Zobrist keys, indexed by side and whether the piece is a king
+    private static final long[][][] PIECE_KEYS = new long[2][2][BitBoard.SQUARES];
+    private static final long[] LAST_DEST_KEYS = new long[BitBoard.SQUARES];
+    private static final long SIDE_KEY;
+
+    // evaluation
+    static final int MAX_PHASE = 24;
+    // number of times each weight counts for a piece of side 0, indexed by whether it is a king and its square
+    private static final int[][][] PIECE_TERMS = new int[2][BitBoard.SQUARES][EvaluationWeights.COUNT];
+    private static final int[][] RUNAWAY_PATHS = new int[2][BitBoard.SQUARES];
+    private static final int[] RUNAWAY_ROWS = { 0x0000FFFF, 0xFFFF0000 };
+
+    private int[] pieces; // indexed by side
+    private int kings;
+    private int side;
+    private int lastDest;
+    private long key;
+    private int pieceSquares; // packed sum of the piece-square values, from the perspective of side 0
+    private int phase; // number of pieces on the board
+    private Evaluator evaluator;
+    private NeuralNetwork network; // of the evaluator, if any
+    private short[] accumulator; // of the network
+
+    static {
+        for (int dir = 0; dir < 4; dir++) {
+            for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+                int dest = BitBoard.shift(dir, 1 << sq);
+                BitBoard.STEPS[dir][sq] = (dest == 0) ? -1 : Integer.numberOfTrailingZeros(dest);
+            }
+        }
+
+        // fixed seed so that keys stored in files stay valid
+        Random random = new Random(0x436865636B657273L);
+        for (int side = 0; side < 2; side++) {
+            for (int king = 0; king < 2; king++) {
+                for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+                    BitBoard.PIECE_KEYS[side][king][sq] = random.nextLong();
+                }
+            }
+        }
+        for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+            BitBoard.LAST_DEST_KEYS[sq] = random.nextLong();
+        }
+        SIDE_KEY = random.nextLong();
+
+        // squares ahead of a pawn from which an opponent piece could stop it
+        for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+            int path = 0;
+            for (int ahead = 0; ahead < sq; ahead++) {
+                int rows = BitBoard.getRow(sq) - BitBoard.getRow(ahead);
+                if ((rows > 0) && (Math.abs(BitBoard.getCol(sq) - BitBoard.getCol(ahead)) <= rows)) {
+                    path |= 1 << ahead;
+                }
+            }
+            BitBoard.RUNAWAY_PATHS[0][sq] = path;
+            BitBoard.RUNAWAY_PATHS[1][BitBoard.SQUARES - 1 - sq] = Integer.reverse(path);
+        }
+
+        for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+            int row = BitBoard.getRow(sq);
+            int col = BitBoard.getCol(sq);
+            int isCentre = ((row >= 2) && (row <= 5) && (col >= 2) && (col <= 5)) ? 1 : 0;
+            int advancement = 7 - row; // from the back row of side 0
+            int[] pawn = BitBoard.PIECE_TERMS[0][sq];
+            pawn[EvaluationWeights.PAWN_MG] = pawn[EvaluationWeights.PAWN_EG] = 1;
+            pawn[EvaluationWeights.ADVANCEMENT_MG] = pawn[EvaluationWeights.ADVANCEMENT_EG] = advancement;
+            pawn[EvaluationWeights.BACK_RANK_MG] = pawn[EvaluationWeights.BACK_RANK_EG] = (advancement == 0) ? 1 : 0;
+            pawn[EvaluationWeights.CENTRE_MG] = pawn[EvaluationWeights.CENTRE_EG] = isCentre;
+            int[] king = BitBoard.PIECE_TERMS[1][sq];
+            king[EvaluationWeights.KING_MG] = king[EvaluationWeights.KING_EG] = 1;
+            king[EvaluationWeights.KING_CENTRE_MG] = king[EvaluationWeights.KING_CENTRE_EG] = isCentre;
+        }
+    }
+
+    public BitBoard() {
+        this.pieces = new int[] { 0xFFF00000, 0x00000FFF };
+        this.kings = 0;
+        this.side = 0;
+        this.lastDest = -1;
+        this.key = this.computeKey();
+        this.evaluator = Evaluator.DEFAULT;
+        this.computeEvaluation();
+    }
+
+    /**
+     * Creates a board from the masks of its pieces.
+     *
+     * @param pieces the masks of the pieces of each side
+     * @param kings  the mask of the pieces that are kings
+     * @param side   the side to move
+     */
+    public BitBoard(int[] pieces, int kings, int side) {
+        this.pieces = new int[] { pieces[0], pieces[1] };
+        this.kings = kings;
+        this.side = side;
+        this.lastDest = -1;
+        this.key = this.computeKey();
+        this.evaluator = Evaluator.DEFAULT;
+        this.computeEvaluation();
+    }
+
+    public BitBoard(BitBoard other) {
+        this(other, other.evaluator);
+    }
+
+    /**
+     * Creates a copy of a board that is evaluated by the given evaluator, its
+     * evaluation being computed from scratch if the evaluator differs from that
+     * of the board copied.
+     *
+     * @param other     the board to be copied
+     * @param evaluator the evaluator of the copy
+     */
+    public BitBoard(BitBoard other, Evaluator evaluator) {
+        this.pieces = new int[] { other.pieces[0], other.pieces[1] };
+        this.kings = other.kings;
+        this.side = other.side;
+        this.lastDest = other.lastDest;
+        this.key = other.key;
+        this.evaluator = evaluator;
+        if (other.evaluator == evaluator) {
+            this.pieceSquares = other.pieceSquares;
+            this.phase = other.phase;
+            this.network = other.network;
+            this.accumulator = (other.accumulator == null) ? null : other.accumulator.clone();
+        } else {
+            this.computeEvaluation();
+        }
+    }
+
+    /**
+     * Replaces the pieces of this board, so that one board can stand for many
+     * placements in turn without being created again.
+     *
+     * @param black the mask of the pieces of side 0
+     * @param red   the mask of the pieces of side 1
+     * @param kings the mask of the pieces that are kings
+     * @param side  the side to move
+     */
+    public void set(int black, int red, int kings, int side) {
+        this.pieces[0] = black;
+        this.pieces[1] = red;
+        this.kings = kings;
+        this.side = side;
+        this.lastDest = -1;
+        this.key = this.computeKey();
+        this.computeEvaluation();
+    }
+
+    /**
+     * Computes the Zobrist key of this board from scratch.
+     */
+    private long computeKey() {
+        long key = (this.side == 1) ? BitBoard.SIDE_KEY : 0;
+        if (this.lastDest != -1) {
+            key ^= BitBoard.LAST_DEST_KEYS[this.lastDest];
+        }
+        for (int side = 0; side < 2; side++) {
+            int bits = this.pieces[side];
+            while (bits != 0) {
+                int sq = Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                key ^= BitBoard.PIECE_KEYS[side][((this.kings & (1 << sq)) != 0) ? 1 : 0][sq];
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Computes the incrementally updated terms of the evaluation of this board
+     * from scratch.
+     */
+    private void computeEvaluation() {
+        this.pieceSquares = 0;
+        this.phase = 0;
+        this.network = this.evaluator.getNeuralNetwork();
+        this.accumulator = (this.network == null) ? null : this.network.newAccumulator();
+        for (int side = 0; side < 2; side++) {
+            int bits = this.pieces[side];
+            while (bits != 0) {
+                int sq = Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int king = ((this.kings & (1 << sq)) != 0) ? 1 : 0;
+                this.pieceSquares += this.evaluator.getPieceSquare(side, king, sq);
+                this.phase++;
+                if (this.network != null) {
+                    this.network.add(this.accumulator, side, king, sq);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns how many times a weight counts for a piece of side 0.
+     *
+     * @param king whether the piece is a king, as {@code 0} or {@code 1}
+     * @param sq   the square of the piece
+     * @param term the index of the weight, such as
+     *             {@link EvaluationWeights#PAWN_MG}
+     */
+    static int getPieceTerm(int king, int sq, int term) {
+        return BitBoard.PIECE_TERMS[king][sq][term];
+    }
+
+    private static int getRow(int sq) {
+        return sq / 4;
+    }
+
+    private static int getCol(int sq) {
+        return 2 * (sq % 4) + ((BitBoard.getRow(sq) % 2 == 0) ? 1 : 0);
+    }
+
+    /**
+     * Moves every square of a mask one step in a diagonal direction, dropping the
+     * squares that would leave the board.
+     *
+     * @param dir  the direction of the step
+     * @param bits the mask of squares to be moved
+     * @return the mask of the destination squares
+     */
+    private static int shift(int dir, int bits) {
+        switch (dir) {
+            case UP_LEFT:
+                return ((bits & BitBoard.EVEN_ROWS) >>> 4) | ((bits & BitBoard.NOT_LEFT) >>> 5);
+            case UP_RIGHT:
+                return ((bits & BitBoard.NOT_RIGHT) >>> 3) | ((bits & BitBoard.ODD_ROWS) >>> 4);
+            case DOWN_LEFT:
+                return ((bits & BitBoard.EVEN_ROWS) << 4) | ((bits & BitBoard.NOT_LEFT) << 3);
+            default:
+                return ((bits & BitBoard.NOT_RIGHT) << 5) | ((bits & BitBoard.ODD_ROWS) << 4);
+        }
+    }
+
+    /**
+     * Returns the square one step away from a square in a diagonal direction.
+     *
+     * @return the index of the square, or {@code -1} if it is off the board
+     */
+    public static int step(int dir, int sq) {
+        return BitBoard.STEPS[dir][sq];
+    }
+
+    private static int opposite(int dir) {
+        return 3 - dir;
+    }
+
+    public static int getSrc(int move) {
+        return move & BitBoard.SQUARE_MASK;
+    }
+
+    public static int getDest(int move) {
+        return (move >>> BitBoard.DEST_SHIFT) & BitBoard.SQUARE_MASK;
+    }
+
+    /**
+     * Returns the number of opponent pieces captured by a move.
+     */
+    public static int getJumps(int move) {
+        return (move >>> BitBoard.JUMPS_SHIFT) & 0xF;
+    }
+
+    /**
+     * Returns the direction of a jump within a capturing move.
+     */
+    public static int getJumpDir(int move, int jump) {
+        return (move >>> (BitBoard.DIRS_SHIFT + 2 * jump)) & 3;
+    }
+
+    public static boolean isCapture(int move) {
+        return BitBoard.getJumps(move) != 0;
+    }
+
+    private static int pack(int src, int dest) {
+        return src | (dest << BitBoard.DEST_SHIFT);
+    }
+
+    private static int pack(int src, int dest, int jumps, int dirs) {
+        return src | (dest << BitBoard.DEST_SHIFT) | (jumps << BitBoard.JUMPS_SHIFT) | dirs;
+    }
+
+    /**
+     * Returns the first jump of a capturing move as a move of its own.
+     */
+    public static int getFirstJump(int move) {
+        int src = BitBoard.getSrc(move);
+        int dir = BitBoard.getJumpDir(move, 0);
+        int dest = BitBoard.step(dir, BitBoard.step(dir, src));
+        return BitBoard.pack(src, dest, 1, dir << BitBoard.DIRS_SHIFT);
+    }
+
+    private static int getDir(int src, int dest) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (BitBoard.step(dir, src) == dest) {
+                return dir;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Converts a packed move to a {@code Move} instance to be used outside of the
+     * search.
+     */
+    public static Move toMove(int move) {
+        Position[] skips = new Position[BitBoard.getJumps(move)];
+        int sq = BitBoard.getSrc(move);
+        for (int i = 0; i < skips.length; i++) {
+            int dir = BitBoard.getJumpDir(move, i);
+            skips[i] = Position.toPosition((byte) BitBoard.step(dir, sq));
+            sq = BitBoard.step(dir, BitBoard.step(dir, sq));
+        }
+        return new Move(Position.toPosition((byte) BitBoard.getSrc(move)), skips,
+                Position.toPosition((byte) BitBoard.getDest(move)));
+    }
+
+    /**
+     * Converts a {@code Move} instance to its packed representation.
+     */
+    public static int toPacked(Move move) {
+        int src = move.getSrc().toByte();
+        int dest = move.getDest().toByte();
+        Position[] skips = move.getSkips();
+        int dirs = 0;
+        int sq = src;
+        for (int i = 0; i < skips.length; i++) {
+            int dir = BitBoard.getDir(sq, skips[i].toByte());
+            dirs |= dir << (BitBoard.DIRS_SHIFT + 2 * i);
+            sq = BitBoard.step(dir, skips[i].toByte());
+        }
+        return BitBoard.pack(src, dest, skips.length, dirs);
+    }
+
+    /**
+     * Returns a packed move in the standard numeric notation, in which black's
+     * pieces start on squares 1 to 12 and every landing square of a capture is
+     * listed, such as {@code 11-15} or {@code 26x17x10}.
+     */
+    public static String toNotation(int move) {
+        int sq = BitBoard.getSrc(move);
+        StringBuilder notation = new StringBuilder().append(BitBoard.SQUARES - sq);
+        if (!BitBoard.isCapture(move)) {
+            return notation.append('-').append(BitBoard.SQUARES - BitBoard.getDest(move)).toString();
+        }
+        for (int i = 0; i < BitBoard.getJumps(move); i++) {
+            int dir = BitBoard.getJumpDir(move, i);
+            sq = BitBoard.step(dir, BitBoard.step(dir, sq));
+            notation.append('x').append(BitBoard.SQUARES - sq);
+        }
+        return notation.toString();
+    }
+
+    /**
+     * Returns the legal move of this board written in the standard numeric
+     * notation, in which the landing squares of a capture between the first and
+     * the last may be omitted.
+     *
+     * @param notation the move, such as {@code 11-15} or {@code 26x10}
+     * @return the packed move, or {@code 0} if it is not legal
+     */
+    public int parseMove(String notation) {
+        String[] squares = notation.split("[-x]");
+        int[] path = new int[squares.length];
+        try {
+            for (int i = 0; i < squares.length; i++) {
+                path[i] = BitBoard.SQUARES - Integer.parseInt(squares[i]);
+            }
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int count = this.genMoves(moves);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if ((path.length < 2) || (BitBoard.getSrc(move) != path[0])
+                    || (BitBoard.getDest(move) != path[path.length - 1])) {
+                continue;
+            }
+            // match the landing squares given
+            int sq = path[0];
+            int next = 1;
+            for (int jump = 0; (jump < BitBoard.getJumps(move)) && (next < path.length - 1); jump++) {
+                int dir = BitBoard.getJumpDir(move, jump);
+                sq = BitBoard.step(dir, BitBoard.step(dir, sq));
+                if (sq == path[next]) {
+                    next++;
+                }
+            }
+            if (next == path.length - 1) {
+                return move;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Creates a board from its description in the standard FEN notation of
+     * checkers, such as {@code B:W21,22,K3:B1-12}, which gives the player to move
+     * followed by the squares of the white (red) and black pieces, kings being
+     * prefixed with {@code K}.
+     *
+     * @throws IllegalArgumentException if the description is not valid
+     */
+    public static BitBoard fromFen(String fen) {
+        String[] fields = fen.trim().replace(".", "").split(":");
+        if ((fields.length != 3) || !fields[0].matches("[BW]")) {
+            throw new IllegalArgumentException("Invalid FEN " + fen);
+        }
+        int[] pieces = new int[2];
+        int kings = 0;
+        for (int i = 1; i < 3; i++) {
+            if (fields[i].isEmpty() || ((fields[i].charAt(0) != 'B') && (fields[i].charAt(0) != 'W'))) {
+                throw new IllegalArgumentException("Invalid FEN " + fen);
+            }
+            int side = (fields[i].charAt(0) == 'B') ? 0 : 1;
+            for (String token : fields[i].substring(1).split(",")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                boolean isKing = token.startsWith("K");
+                String[] range = (isKing ? token.substring(1) : token).split("-");
+                try {
+                    int first = Integer.parseInt(range[0]);
+                    int last = Integer.parseInt(range[range.length - 1]);
+                    for (int n = first; n <= last; n++) {
+                        if ((n < 1) || (n > BitBoard.SQUARES)) {
+                            throw new IllegalArgumentException("Invalid square " + n + " in FEN " + fen);
+                        }
+                        int bit = 1 << (BitBoard.SQUARES - n);
+                        pieces[side] |= bit;
+                        kings |= isKing ? bit : 0;
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid FEN " + fen);
+                }
+            }
+        }
+        if ((pieces[0] & pieces[1]) != 0) {
+            throw new IllegalArgumentException("Overlapping pieces in FEN " + fen);
+        }
+        return new BitBoard(pieces, kings, fields[0].equals("B") ? 0 : 1);
+    }
+
+    /**
+     * Returns the description of this board in the standard FEN notation of
+     * checkers.
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder((this.side == 0) ? "B" : "W");
+        for (int side = 1; side >= 0; side--) {
+            fen.append(':').append((side == 0) ? 'B' : 'W');
+            String separator = "";
+            for (int n = 1; n <= BitBoard.SQUARES; n++) {
+                int bit = 1 << (BitBoard.SQUARES - n);
+                if ((this.pieces[side] & bit) != 0) {
+                    fen.append(separator).append(((this.kings & bit) != 0) ? "K" : "").append(n);
+                    separator = ",";
+                }
+            }
+        }
+        return fen.toString();
+    }
+
+    /**
+     * Returns the pieces of the player to move that are allowed to step in a
+     * direction, pawns only moving towards the opponent's side.
+     */
+    private int getMovers(int dir, int own) {
+        return this.isForward(dir) ? own : own & this.kings;
+    }
+
+    private boolean isForward(int dir) {
+        return (dir == BitBoard.UP_LEFT || dir == BitBoard.UP_RIGHT) == (this.side == 0);
+    }
+
+    private int getEmpty() {
+        return ~(this.pieces[0] | this.pieces[1]);
+    }
+
+    private int getCaptureDests(int dir, int own) {
+        int opp = this.pieces[this.side ^ 1];
+        return BitBoard.shift(dir, BitBoard.shift(dir, this.getMovers(dir, own)) & opp) & this.getEmpty();
+    }
+
+    private boolean canCapture(int own) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (this.getCaptureDests(dir, own) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes every complete sequence of jumps that a piece can continue from a
+     * square, capturing each opponent piece as it is jumped and promoting a pawn
+     * as soon as it reaches the last row.
+     *
+     * @param moves  the array the moves are written to
+     * @param count  the number of moves already written
+     * @param src    the square the capturing piece started from
+     * @param sq     the square the capturing piece has reached
+     * @param isKing whether the capturing piece is a king
+     * @param opp    the opponent pieces that have not been captured yet
+     * @param empty  the empty squares
+     * @param jumps  the number of jumps made so far
+     * @param dirs   the packed directions of the jumps made so far
+     * @return the number of moves written in total
+     */
+    private int genJumps(int[] moves, int count, int src, int sq, boolean isKing, int opp, int empty, int jumps,
+            int dirs) {
+        assert jumps <= BitBoard.MAX_JUMPS;
+        boolean isComplete = true;
+        for (int dir = 0; dir < 4; dir++) {
+            int skip = BitBoard.step(dir, sq);
+            if ((skip == -1) || ((opp & (1 << skip)) == 0) || (!isKing && !this.isForward(dir))) {
+                continue;
+            }
+            int dest = BitBoard.step(dir, skip);
+            if ((dest == -1) || ((empty & (1 << dest)) == 0)) {
+                continue;
+            }
+            isComplete = false;
+            boolean isPromoted = isKing || ((1 << dest) & BitBoard.PROMOTION_ROWS[this.side]) != 0;
+            count = this.genJumps(moves, count, src, dest, isPromoted, opp & ~(1 << skip),
+                    (empty | (1 << sq) | (1 << skip)) & ~(1 << dest), jumps + 1,
+                    dirs | (dir << (BitBoard.DIRS_SHIFT + 2 * jumps)));
+        }
+        if (isComplete && (jumps > 0)) {
+            moves[count++] = BitBoard.pack(src, sq, jumps, dirs);
+        }
+        return count;
+    }
+
+    private int genCaptures(int[] moves, int own) {
+        // find every piece that can capture
+        int srcs = 0;
+        for (int dir = 0; dir < 4; dir++) {
+            int back = BitBoard.opposite(dir);
+            srcs |= BitBoard.shift(back, BitBoard.shift(back, this.getCaptureDests(dir, own)));
+        }
+
+        int count = 0;
+        while (srcs != 0) {
+            int src = Integer.numberOfTrailingZeros(srcs);
+            srcs &= srcs - 1;
+            count = this.genJumps(moves, count, src, src, (this.kings & (1 << src)) != 0,
+                    this.pieces[this.side ^ 1], this.getEmpty(), 0, 0);
+        }
+        return count;
+    }
+
+    private int genOrdinaryMoves(int[] moves, int own) {
+        int count = 0;
+        int empty = this.getEmpty();
+        for (int dir = 0; dir < 4; dir++) {
+            int dests = BitBoard.shift(dir, this.getMovers(dir, own)) & empty;
+            while (dests != 0) {
+                int dest = Integer.numberOfTrailingZeros(dests);
+                dests &= dests - 1;
+                moves[count++] = BitBoard.pack(BitBoard.step(BitBoard.opposite(dir), dest), dest);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the legal moves of the player to move into an array, captures being
+     * mandatory and made up of every jump the capturing piece can continue with.
+     *
+     * @param moves the array with room for at least {@link #MAX_MOVES} moves
+     * @return the number of legal moves written
+     */
+    public int genMoves(int[] moves) {
+        if (this.lastDest != -1) {
+            return this.genCaptures(moves, 1 << this.lastDest);
+        }
+        int count = this.genCaptures(moves, this.pieces[this.side]);
+        if (count > 0) {
+            return count;
+        }
+        return this.genOrdinaryMoves(moves, this.pieces[this.side]);
+    }
+
+    public boolean hasMoves() {
+        if (this.lastDest != -1) {
+            return true;
+        }
+        int own = this.pieces[this.side];
+        int empty = this.getEmpty();
+        for (int dir = 0; dir < 4; dir++) {
+            if ((BitBoard.shift(dir, this.getMovers(dir, own)) & empty) != 0) {
+                return true;
+            }
+        }
+        return this.canCapture(own);
+    }
+
+    /**
+     * Performs a complete move in place and passes the turn to the opponent.
+     * 
+     * @param move the packed legal move to be performed
+     * @return an {@code int} record of the state lost by the move, to be passed
+     *         to {@link #undo(int, int)}
+     */
+    public int perform(int move) {
+        int src = BitBoard.getSrc(move);
+        int dest = BitBoard.getDest(move);
+        int srcBit = 1 << src;
+        int destBit = 1 << dest;
+        int record = ((this.lastDest + 1) << BitBoard.LAST_DEST_SHIFT) | (this.side << BitBoard.SIDE_SHIFT);
+        boolean isKing = (this.kings & srcBit) != 0;
+
+        // move friendly piece, which may land back on its source
+        this.pieces[this.side] = (this.pieces[this.side] & ~srcBit) | destBit;
+        this.kings &= ~srcBit;
+        this.key ^= BitBoard.PIECE_KEYS[this.side][isKing ? 1 : 0][src];
+        this.pieceSquares -= this.evaluator.getPieceSquare(this.side, isKing ? 1 : 0, src);
+
+        // remove opponent pieces
+        int jumps = BitBoard.getJumps(move);
+        int sq = src;
+        int promotion = destBit & BitBoard.PROMOTION_ROWS[this.side];
+        for (int i = 0; i < jumps; i++) {
+            int dir = BitBoard.getJumpDir(move, i);
+            int skip = BitBoard.step(dir, sq);
+            int skipBit = 1 << skip;
+            sq = BitBoard.step(dir, skip);
+            promotion |= (1 << sq) & BitBoard.PROMOTION_ROWS[this.side];
+            this.pieces[this.side ^ 1] &= ~skipBit;
+            this.phase--;
+            if ((this.kings & skipBit) != 0) {
+                this.kings &= ~skipBit;
+                this.key ^= BitBoard.PIECE_KEYS[this.side ^ 1][1][skip];
+                this.pieceSquares -= this.evaluator.getPieceSquare(this.side ^ 1, 1, skip);
+                record |= 1 << i;
+                if (this.network != null) {
+                    this.network.remove(this.accumulator, this.side ^ 1, 1, skip);
+                }
+            } else {
+                this.key ^= BitBoard.PIECE_KEYS[this.side ^ 1][0][skip];
+                this.pieceSquares -= this.evaluator.getPieceSquare(this.side ^ 1, 0, skip);
+                if (this.network != null) {
+                    this.network.remove(this.accumulator, this.side ^ 1, 0, skip);
+                }
+            }
+        }
+
+        // promote pawn to king
+        if (isKing || (promotion != 0)) {
+            this.kings |= destBit;
+            this.key ^= BitBoard.PIECE_KEYS[this.side][1][dest];
+            this.pieceSquares += this.evaluator.getPieceSquare(this.side, 1, dest);
+            if (!isKing) {
+                record |= BitBoard.PROMOTED;
+            }
+        } else {
+            this.key ^= BitBoard.PIECE_KEYS[this.side][0][dest];
+            this.pieceSquares += this.evaluator.getPieceSquare(this.side, 0, dest);
+        }
+        if (this.network != null) {
+            this.network.move(this.accumulator, this.side, isKing ? 1 : 0, src, ((this.kings & destBit) != 0) ? 1 : 0,
+                    dest);
+        }
+
+        // change player turn
+        this.side ^= 1;
+        this.key ^= BitBoard.SIDE_KEY;
+        if (this.lastDest != -1) {
+            this.key ^= BitBoard.LAST_DEST_KEYS[this.lastDest];
+            this.lastDest = -1;
+        }
+        return record;
+    }
+
+    /**
+     * Performs a move played in a game, which may only be the first jump of a
+     * multiple capture, in which case the same player continues it from the
+     * square the piece landed on.
+     * 
+     * @param move the packed legal move to be performed
+     */
+    public void play(int move) {
+        this.perform(move);
+        if (BitBoard.isCapture(move)) {
+            this.side ^= 1;
+            if (this.canCapture(1 << BitBoard.getDest(move))) {
+                this.lastDest = BitBoard.getDest(move);
+                this.key ^= BitBoard.SIDE_KEY ^ BitBoard.LAST_DEST_KEYS[this.lastDest];
+            } else {
+                this.side ^= 1;
+            }
+        }
+    }
+
+    /**
+     * Takes back a move in place, restoring the state before it was performed.
+     * 
+     * @param move   the packed move that was last performed
+     * @param record the record returned when the move was performed
+     */
+    public void undo(int move, int record) {
+        int src = BitBoard.getSrc(move);
+        int dest = BitBoard.getDest(move);
+        int srcBit = 1 << src;
+        int destBit = 1 << dest;
+        this.side = (record >>> BitBoard.SIDE_SHIFT) & 1;
+        this.lastDest = ((record >>> BitBoard.LAST_DEST_SHIFT) & 0x3F) - 1;
+        this.key ^= BitBoard.SIDE_KEY;
+        if (this.lastDest != -1) {
+            this.key ^= BitBoard.LAST_DEST_KEYS[this.lastDest];
+        }
+
+        // move friendly piece back, demoting it if it was promoted
+        boolean wasKing = (this.kings & destBit) != 0;
+        boolean isKing = wasKing && ((record & BitBoard.PROMOTED) == 0);
+        this.pieces[this.side] = (this.pieces[this.side] & ~destBit) | srcBit;
+        this.kings &= ~destBit;
+        if (isKing) {
+            this.kings |= srcBit;
+        }
+        this.key ^= BitBoard.PIECE_KEYS[this.side][wasKing ? 1 : 0][dest]
+                ^ BitBoard.PIECE_KEYS[this.side][isKing ? 1 : 0][src];
+        this.pieceSquares += this.evaluator.getPieceSquare(this.side, isKing ? 1 : 0, src)
+                - this.evaluator.getPieceSquare(this.side, wasKing ? 1 : 0, dest);
+        if (this.network != null) {
+            this.network.move(this.accumulator, this.side, wasKing ? 1 : 0, dest, isKing ? 1 : 0, src);
+        }
+
+        // restore opponent pieces
+        int jumps = BitBoard.getJumps(move);
+        int sq = src;
+        for (int i = 0; i < jumps; i++) {
+            int dir = BitBoard.getJumpDir(move, i);
+            int skip = BitBoard.step(dir, sq);
+            int skipBit = 1 << skip;
+            sq = BitBoard.step(dir, skip);
+            this.pieces[this.side ^ 1] |= skipBit;
+            this.phase++;
+            if ((record & (1 << i)) != 0) {
+                this.kings |= skipBit;
+                this.key ^= BitBoard.PIECE_KEYS[this.side ^ 1][1][skip];
+                this.pieceSquares += this.evaluator.getPieceSquare(this.side ^ 1, 1, skip);
+                if (this.network != null) {
+                    this.network.add(this.accumulator, this.side ^ 1, 1, skip);
+                }
+            } else {
+                this.key ^= BitBoard.PIECE_KEYS[this.side ^ 1][0][skip];
+                this.pieceSquares += this.evaluator.getPieceSquare(this.side ^ 1, 0, skip);
+                if (this.network != null) {
+                    this.network.add(this.accumulator, this.side ^ 1, 0, skip);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the state of this board based on the material, advancement, back
+     * rank and centre control of each player, interpolated between their
+     * middlegame and endgame weights by the number of pieces left, along with the
+     * pawns that can no longer be stopped from promoting and the mobility of the
+     * kings, as weighted by the evaluator of this board. Every term but the last
+     * two is updated as moves are performed. If the evaluator has a neural
+     * network, the network evaluates the board instead.
+     *
+     * @return the heuristic evaluation of this board from the perspective of the
+     *         player to move, in hundredths of a pawn.
+     */
+    public int evaluate() {
+        if (this.network != null) {
+            return this.network.evaluate(this.accumulator, this.side);
+        }
+        int phase = Math.min(this.phase, BitBoard.MAX_PHASE);
+        int mg = (short) this.pieceSquares;
+        int eg = (this.pieceSquares - mg) >> 16;
+        int eval = (mg * phase + eg * (BitBoard.MAX_PHASE - phase)) / BitBoard.MAX_PHASE;
+        eval += this.evaluator.getRunaway() * (this.countRunaways(0) - this.countRunaways(1))
+                + this.evaluator.getKingMobility() * (this.countKingMoves(0) - this.countKingMoves(1));
+        return (this.side == 0) ? eval : -eval;
+    }
+
+    /**
+     * Writes how many times each weight counts in the evaluation of this board
+     * with the weights, from the perspective of side 0, before the middlegame
+     * and endgame weights are scaled by the phase of the board. The evaluation
+     * is the sum of the products of the weights and their counts, up to
+     * rounding, once the middlegame counts are multiplied by the phase and the
+     * endgame counts by {@link #MAX_PHASE} minus the phase, both divided by
+     * {@link #MAX_PHASE}.
+     *
+     * @param terms the array of {@link EvaluationWeights#COUNT} counts
+     * @return the phase, from {@code 0} in the endgame to {@link #MAX_PHASE}
+     */
+    public int countTerms(int[] terms) {
+        Arrays.fill(terms, 0);
+        for (int side = 0; side < 2; side++) {
+            int sign = (side == 0) ? 1 : -1;
+            int bits = this.pieces[side];
+            while (bits != 0) {
+                int sq = Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int king = ((this.kings & (1 << sq)) != 0) ? 1 : 0;
+                int[] pieceTerms = BitBoard.PIECE_TERMS[king][(side == 0) ? sq : BitBoard.SQUARES - 1 - sq];
+                for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+                    terms[term] += sign * pieceTerms[term];
+                }
+            }
+            terms[EvaluationWeights.RUNAWAY] += sign * this.countRunaways(side);
+            terms[EvaluationWeights.KING_MOBILITY] += sign * this.countKingMoves(side);
+        }
+        return Math.min(this.phase, BitBoard.MAX_PHASE);
+    }
+
+    /**
+     * Returns the number of pawns of a side with no opponent piece between them
+     * and the promotion row.
+     */
+    private int countRunaways(int side) {
+        int count = 0;
+        int opp = this.pieces[side ^ 1];
+        int pawns = this.pieces[side] & ~this.kings & BitBoard.RUNAWAY_ROWS[side];
+        while (pawns != 0) {
+            int sq = Integer.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            if ((BitBoard.RUNAWAY_PATHS[side][sq] & opp) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of empty squares the kings of a side can step to, each
+     * square counting once per direction it can be reached from.
+     */
+    private int countKingMoves(int side) {
+        int kings = this.pieces[side] & this.kings;
+        if (kings == 0) {
+            return 0;
+        }
+        int count = 0;
+        int empty = this.getEmpty();
+        for (int dir = 0; dir < 4; dir++) {
+            count += Integer.bitCount(BitBoard.shift(dir, kings) & empty);
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether a move of the player to move ends with a pawn reaching the
+     * promotion row.
+     */
+    public boolean isPromotion(int move) {
+        return ((this.kings & (1 << BitBoard.getSrc(move))) == 0)
+                && (((1 << BitBoard.getDest(move)) & BitBoard.PROMOTION_ROWS[this.side]) != 0);
+    }
+
+    public Piece getPiece(int sq) {
+        int bit = 1 << sq;
+        for (Player player : Player.values()) {
+            if ((this.pieces[player.ordinal()] & bit) != 0) {
+                return ((this.kings & bit) != 0) ? player.getKing() : player.getPawn();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the mask of the pieces of a side.
+     */
+    public int getPieces(int side) {
+        return this.pieces[side];
+    }
+
+    public int getKings() {
+        return this.kings;
+    }
+
+    public int getSide() {
+        return this.side;
+    }
+
+    public Player getPlayerTurn() {
+        return Player.values()[this.side];
+    }
+
+    public int getLastDest() {
+        return this.lastDest;
+    }
+
+    /**
+     * Returns the Zobrist key of this board, covering the placement of the
+     * pieces, the player to move and the square a multiple capture continues
+     * from.
+     * 
+     * @return a {@code long} identifying the state of this board
+     */
+    public long getKey() {
+        return this.key;
+    }
+}
\ No newline at end of file
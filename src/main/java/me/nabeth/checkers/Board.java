@@ -18,9 +18,7 @@ package me.nabeth.checkers;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -32,225 +30,79 @@ public class Board implements Visualizable {
     public static final int SQUARE_SIZE = 90;
     private static final int RADIUS = 35;
 
-    private Piece[][] board;
-    private Map<Piece, Integer> counts;
+    private BitBoard bitBoard;
     private static Player player;
-    private Player playerTurn;
     private Position selected;
-    private Position lastDest;
     private Move playedMove;
 
     public Board(Player player) {
-        this.board = new Piece[Board.SIZE][Board.SIZE];
-        for (int col = 1; col < Board.SIZE; col += 2) {
-            this.board[0][col] = Player.PLAYER2.getPawn();
-            this.board[2][col] = Player.PLAYER2.getPawn();
-            this.board[6][col] = Player.PLAYER1.getPawn();
-        }
-        for (int col = 0; col < Board.SIZE; col += 2) {
-            this.board[1][col] = Player.PLAYER2.getPawn();
-            this.board[5][col] = Player.PLAYER1.getPawn();
-            this.board[7][col] = Player.PLAYER1.getPawn();
-        }
-        this.counts = new HashMap<>();
-        this.counts.put(Player.PLAYER1.getPawn(), 12);
-        this.counts.put(Player.PLAYER2.getPawn(), 12);
+        this.bitBoard = new BitBoard();
+        Board.player = player;
+    }
+
+    /**
+     * Creates a board in a given state, such as one read from a FEN description.
+     */
+    public Board(Player player, BitBoard bitBoard) {
+        this.bitBoard = new BitBoard(bitBoard);
         Board.player = player;
-        this.playerTurn = Player.PLAYER1;
     }
 
     public Board(Board other) {
         if (other != null) {
-            this.board = new Piece[Board.SIZE][Board.SIZE];
-            for (int row = 0; row < Board.SIZE; row++) {
-                for (int col = 0; col < Board.SIZE; col++) {
-                    this.board[row][col] = other.board[row][col];
-                }
-            }
-            this.counts = new HashMap<>();
-            this.counts.putAll(other.counts);
-            this.playerTurn = other.playerTurn;
+            this.bitBoard = new BitBoard(other.bitBoard);
             this.selected = new Position(other.selected);
-            this.lastDest = new Position(other.lastDest);
             this.playedMove = new Move(other.playedMove);
         }
     }
 
     /**
-     * Evaluates the state of this board based on the number of each type of piece
-     * for each player.
+     * Evaluates the state of this board as in {@link BitBoard#evaluate()}.
      * 
      * @return the heuristic evaluation of this board.
      */
     public int heuristic() {
-        int eval = 2 * this.counts.getOrDefault(Player.PLAYER1.getPawn(), 0)
-                - 2 * this.counts.getOrDefault(Player.PLAYER2.getPawn(), 0)
-                + 3 * this.counts.getOrDefault(Player.PLAYER1.getKing(), 0)
-                - 3 * this.counts.getOrDefault(Player.PLAYER2.getKing(), 0);
-        if (Board.player.getOpponent() == Player.PLAYER2) {
+        int eval = this.bitBoard.evaluate();
+        if (this.bitBoard.getPlayerTurn() == Board.player) {
             eval *= -1; // positive if opponent is winning
         }
         return eval;
     }
 
-    private boolean isValidPosition(Position pos) {
-        return ((pos.getRow() >= 0) && (pos.getRow() < Board.SIZE) && (pos.getCol() >= 0)
-                && (pos.getCol() < Board.SIZE));
-    }
-
-    private boolean isValidMove(Move move) {
-        if (this.isValidPosition(move.getDest()) && (this.getPiece(move.getDest()) == null)) {
-            Piece srcPiece = this.getPiece(move.getSrc());
-            if (srcPiece == this.playerTurn.getPawn()) {
-                if ((srcPiece == Player.PLAYER1.getPawn()) && (move.getSrc().getRow() > move.getDest().getRow())) {
-                    return true; // player 1 pawn
-                }
-                if ((srcPiece == Player.PLAYER2.getPawn()) && (move.getSrc().getRow() < move.getDest().getRow())) {
-                    return true; // player 2 pawn
-                }
-            }
-            if (srcPiece == this.playerTurn.getKing()) {
-                return true; // king
-            }
-        }
-        return false;
-    }
-
-    private boolean isValidCapture(Move capture) {
-        if (!this.isValidPosition(capture.getSkip())) {
-            return false;
-        }
-        Piece skipPiece = this.getPiece(capture.getSkip());
-        return (this.isValidMove(capture)) && ((skipPiece == this.playerTurn.getOpponent().getPawn())
-                || (skipPiece == this.playerTurn.getOpponent().getKing()));
-    }
-
-    private Set<Move> genOrdinaryMoves(Position src) {
-        Set<Move> ordinaryMoves = new HashSet<>();
-        int[][] ordinaryDirs = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
-        for (int i = 0; i < ordinaryDirs.length; i++) {
-            Position dest = new Position(src.getRow() + ordinaryDirs[i][0], src.getCol() + ordinaryDirs[i][1]);
-            Move ordinaryMove = new Move(src, dest);
-            if (this.isValidMove(ordinaryMove)) {
-                ordinaryMoves.add(ordinaryMove);
-            }
-        }
-        return ordinaryMoves;
-    }
-
-    private Set<Move> genOrdinaryMoves() {
-        Set<Move> ordinaryMoves = new HashSet<>();
-        for (int row = 0; row < Board.SIZE; row++) {
-            for (int col = 0; col < Board.SIZE; col++) {
-                Position src = new Position(row, col);
-                ordinaryMoves.addAll(this.genOrdinaryMoves(src));
-            }
-        }
-        return ordinaryMoves;
-    }
-
-    private Set<Move> genCapturingMoves(Position src) {
-        Set<Move> capturingMoves = new HashSet<>();
-        int[][] capturingDirs = { { 2, 2 }, { 2, -2 }, { -2, 2 }, { -2, -2 } };
-        for (int i = 0; i < capturingDirs.length; i++) {
-            Position dest = new Position(src.getRow() + capturingDirs[i][0], src.getCol() + capturingDirs[i][1]);
-            Move capturingMove = new Move(src, dest);
-            if (this.isValidCapture(capturingMove)) {
-                capturingMoves.add(capturingMove);
-            }
-        }
-        return capturingMoves;
-    }
-
-    private Set<Move> genCapturingMoves() {
-        Set<Move> capturingMoves = new HashSet<>();
-        for (int row = 0; row < Board.SIZE; row++) {
-            for (int col = 0; col < Board.SIZE; col++) {
-                Position src = new Position(row, col);
-                capturingMoves.addAll(this.genCapturingMoves(src));
-            }
-        }
-        return capturingMoves;
-    }
-
+    /**
+     * Returns the legal moves of a piece one jump at a time, as they are played
+     * through the panel.
+     */
     private Set<Move> getLegalMoves(Position src) {
-        // multiple captures
-        if ((this.lastDest != null) && (src.equals(this.lastDest))) {
-            return this.genCapturingMoves(src);
-        }
-
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int count = this.bitBoard.genMoves(moves);
         Set<Move> legalMoves = new HashSet<>();
-        // captures from source
-        legalMoves.addAll(this.genCapturingMoves(src));
-        if (!legalMoves.isEmpty()) {
-            return legalMoves;
-        }
-        // captures from other sources
-        if (!this.genCapturingMoves().isEmpty()) {
-            return legalMoves;
+        for (int i = 0; i < count; i++) {
+            if (BitBoard.getSrc(moves[i]) == src.toByte()) {
+                int move = BitBoard.isCapture(moves[i]) ? BitBoard.getFirstJump(moves[i]) : moves[i];
+                legalMoves.add(BitBoard.toMove(move));
+            }
         }
-        // ordinary moves
-        legalMoves.addAll(this.genOrdinaryMoves(src));
         return legalMoves;
     }
 
     public Set<Move> getLegalMoves() {
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int count = this.bitBoard.genMoves(moves);
         Set<Move> legalMoves = new HashSet<>();
-        // captures
-        legalMoves.addAll(this.genCapturingMoves());
-        if (!legalMoves.isEmpty()) {
-            return legalMoves;
+        for (int i = 0; i < count; i++) {
+            legalMoves.add(BitBoard.toMove(moves[i]));
         }
-        // ordinary moves
-        legalMoves.addAll(this.genOrdinaryMoves());
         return legalMoves;
     }
 
-    private void promote(Position pos) {
-        if (this.getPiece(pos) == Player.PLAYER1.getPawn()) {
-            this.setPiece(pos, Player.PLAYER1.getKing());
-        } else if (this.getPiece(pos) == Player.PLAYER2.getPawn()) {
-            this.setPiece(pos, Player.PLAYER2.getKing());
-        }
-    }
-
     public void perform(Move move) {
-        // move friendly piece
-        this.setPiece(move.getDest(), this.getPiece(move.getSrc()));
-        this.setPiece(move.getSrc(), null);
-
-        // remove opponent piece
-        if (move.isCapturing()) {
-            int count = this.counts.getOrDefault(this.getPiece(move.getSkip()), 0);
-            this.counts.put(this.getPiece(move.getSkip()), count - 1);
-            this.setPiece(move.getSkip(), null);
-        }
-
-        // promote pawn to king
-        if (((move.getDest().getRow() == 0) && (this.getPiece(move.getDest()) == Player.PLAYER1.getPawn()))
-                || ((move.getDest().getRow() == Board.SIZE - 1)
-                        && (this.getPiece(move.getDest()) == Player.PLAYER2.getPawn()))) {
-            this.promote(move.getDest());
-        }
-
-        // change player turn
-        boolean playerCanCapture = false;
-        for (Move legalMove : this.getLegalMoves(move.getDest())) {
-            if (legalMove.isCapturing()) {
-                playerCanCapture = true;
-            }
-        }
-        if (move.isCapturing() && playerCanCapture) {
-            this.lastDest = move.getDest();
-        } else {
-            this.playerTurn = this.playerTurn.getOpponent();
-            this.lastDest = null;
-        }
+        this.bitBoard.play(BitBoard.toPacked(move));
     }
 
     public Player getWinner() {
-        if (this.getLegalMoves().isEmpty()) {
-            return this.playerTurn.getOpponent();
+        if (!this.bitBoard.hasMoves()) {
+            return this.bitBoard.getPlayerTurn().getOpponent();
         }
         return null;
     }
@@ -271,7 +123,7 @@ public class Board implements Visualizable {
                 int pieceX = (int) ((col + 0.5) * Board.SQUARE_SIZE);
                 int pieceY = (int) ((row + 0.5) * Board.SQUARE_SIZE);
                 int dist = (int) (Math.sqrt(Math.pow(mouseX - pieceX, 2) + Math.pow(mouseY - pieceY, 2)));
-                if ((dist <= Board.RADIUS) && (this.board[row][col] != null)) {
+                if ((dist <= Board.RADIUS) && (this.getPiece(row, col) != null)) {
                     this.selected = new Position(row, col);
                     return true;
                 }
@@ -345,35 +197,42 @@ public class Board implements Visualizable {
         // draw pieces
         for (int row = 0; row < Board.SIZE; row++) {
             for (int col = 0; col < Board.SIZE; col++) {
-                if (this.board[row][col] != null) {
+                if (this.getPiece(row, col) != null) {
                     Position piece = new Position(row, col);
                     if (Board.player == Player.PLAYER2) {
                         piece.reflect();
                     }
                     int pieceX = x + piece.getCol() * Board.SQUARE_SIZE + margin;
                     int pieceY = y + piece.getRow() * Board.SQUARE_SIZE + margin;
-                    this.board[row][col].draw(g2d, pieceX, pieceY, 2 * Board.RADIUS, 2 * Board.RADIUS);
+                    this.getPiece(row, col).draw(g2d, pieceX, pieceY, 2 * Board.RADIUS, 2 * Board.RADIUS);
                 }
             }
         }
     }
 
-    private Piece getPiece(Position pos) {
-        return this.board[pos.getRow()][pos.getCol()];
+    private Piece getPiece(int row, int col) {
+        if ((row + col) % 2 == 0) {
+            return null; // light tiles are never occupied
+        }
+        return this.bitBoard.getPiece(new Position(row, col).toByte());
+    }
+
+    public BitBoard getBitBoard() {
+        return this.bitBoard;
+    }
+
+    public long getKey() {
+        return this.bitBoard.getKey();
     }
 
     public boolean isPlayersTurn() {
-        return this.playerTurn == Board.player;
+        return this.bitBoard.getPlayerTurn() == Board.player;
     }
 
     public Move getPlayedMove() {
         return this.playedMove;
     }
 
-    private void setPiece(Position pos, Piece piece) {
-        this.board[pos.getRow()][pos.getCol()] = piece;
-    }
-
     public void clearPlayedMove() {
         this.playedMove = null;
     }
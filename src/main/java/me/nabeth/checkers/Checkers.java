@@ -83,6 +83,9 @@ public class Checkers {
             this.server = null;
         }
         this.client = null;
+        if (this.AIPlayer != null) {
+            this.AIPlayer.stopPondering();
+        }
         if (this.inGame()) {
             this.playerTimer.stop();
             this.oppTimer.stop();
@@ -147,6 +150,7 @@ public class Checkers {
             this.isPvP = false;
 
             this.setGameParams(this.playerSettings);
+            this.AIPlayer.newGame();
 
             this.gameRunner = new GameRunner(this);
             this.gameRunner.start();
@@ -216,6 +220,9 @@ public class Checkers {
     }
 
     public void setAIPlayer(AI AIPlayer) {
+        if (this.AIPlayer != null) {
+            this.AIPlayer.stopPondering();
+        }
         this.AIPlayer = AIPlayer;
     }
 
@@ -0,0 +1,268 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The {@code EndgameDatabase} class looks up whether boards with few pieces are
+ * won, lost or drawn by the player to move. The result of every placement of a
+ * material signature is stored in its own file with two bits per board.
+ * <p>
+ * Each file is split into blocks of a fixed number of boards that are
+ * compressed separately, and starts with the offset of each block. The files
+ * are memory-mapped, and a block is decompressed the first time one of its
+ * boards is looked up, then kept in a cache of recently used blocks shared by
+ * all threads. The cache holds two blocks per set, the most recently used
+ * first, and is read and written without locking: its entries are immutable,
+ * so a race between two threads can only cost a block being decompressed again.
+ */
+public class EndgameDatabase {
+    public static final int UNKNOWN = -1, DRAW = 0, WIN = 1, LOSS = 2, INVALID = 3;
+    public static final int CACHE_MEGABYTES = 16;
+
+    private static final int BLOCK_BYTES = 1 << 12;
+    private static final int BLOCK_BOARDS = 4 * EndgameDatabase.BLOCK_BYTES;
+    private static final int SET_SIZE = 2; // cached blocks that a block may replace
+
+    private File directory;
+    private volatile int maxPieces;
+    private volatile Slice[] slices; // indexed by packed material signature, replaced when one is added
+    private int slicesAdded;
+    private Block[] cache; // grouped into sets, the most recently used first
+    private int setShift; // turning a hashed key into the index of its set
+
+    /**
+     * Opens the endgame databases stored in a directory.
+     *
+     * @param directory      the directory of the files
+     * @param cacheMegabytes the memory budget of the decompressed blocks
+     * @throws IOException if a file cannot be mapped
+     */
+    public EndgameDatabase(File directory, int cacheMegabytes) throws IOException {
+        this.directory = directory;
+        this.slices = new Slice[Material.SIGNATURES];
+        int sets = Integer.highestOneBit(
+                Math.max((cacheMegabytes << 20) / EndgameDatabase.BLOCK_BYTES / EndgameDatabase.SET_SIZE, 2));
+        this.cache = new Block[sets * EndgameDatabase.SET_SIZE];
+        this.setShift = 64 - Integer.numberOfTrailingZeros(sets);
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.matches("\\d{4}\\.edb")) {
+                this.add(new Material(name.charAt(0) - '0', name.charAt(1) - '0', name.charAt(2) - '0',
+                        name.charAt(3) - '0'));
+            }
+        }
+    }
+
+    /**
+     * Returns the largest number of pieces of the material signatures added.
+     */
+    public int getMaxPieces() {
+        return this.maxPieces;
+    }
+
+    /**
+     * Maps the file of a material signature so that its boards can be looked up.
+     *
+     * @param material the material signature
+     * @throws IOException if the file cannot be mapped
+     */
+    public synchronized void add(Material material) throws IOException {
+        File file = new File(this.directory, material.getFileName());
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+            Slice[] slices = this.slices.clone();
+            slices[material.getSignature()] = new Slice(this.slicesAdded++, material, buffer);
+            this.slices = slices;
+        }
+        this.maxPieces = Math.max(this.maxPieces, material.getPieces());
+    }
+
+    /**
+     * Returns the result of a board for the player to move.
+     *
+     * @param board the board to be looked up
+     * @return {@link #WIN}, {@link #LOSS} or {@link #DRAW}, or {@link #UNKNOWN}
+     *         if the board is not in the databases
+     */
+    public int probe(BitBoard board) {
+        if (board.getLastDest() != -1) { // in the middle of a multiple capture
+            return EndgameDatabase.UNKNOWN;
+        }
+        if (board.getPieces(board.getSide()) == 0) {
+            return EndgameDatabase.LOSS;
+        }
+        int pieces = Integer.bitCount(board.getPieces(0) | board.getPieces(1));
+        if ((pieces > this.maxPieces) || (board.getPieces(board.getSide() ^ 1) == 0)) {
+            return EndgameDatabase.UNKNOWN;
+        }
+
+        Slice slice = this.slices[Material.getSignature(board)];
+        if (slice == null) {
+            return EndgameDatabase.UNKNOWN;
+        }
+        long index = slice.material.getIndex(board);
+        byte[] block = this.getBlock(slice, (int) (index / EndgameDatabase.BLOCK_BOARDS));
+        int offset = (int) (index % EndgameDatabase.BLOCK_BOARDS);
+        int value = (block[offset >>> 2] >>> (2 * (offset & 3))) & 3;
+        return (value == EndgameDatabase.INVALID) ? EndgameDatabase.UNKNOWN : value;
+    }
+
+    /**
+     * Returns a decompressed block, from the cache if it is there.
+     */
+    private byte[] getBlock(Slice slice, int index) {
+        long key = ((long) slice.id << 32) | index;
+        int set = (int) ((key * 0x9E3779B97F4A7C15L) >>> this.setShift) * EndgameDatabase.SET_SIZE;
+        Block[] cache = this.cache;
+        Block first = cache[set];
+        if ((first != null) && (first.key == key)) {
+            return first.values;
+        }
+        Block second = cache[set + 1];
+        if ((second != null) && (second.key == key)) {
+            cache[set + 1] = first;
+            cache[set] = second;
+            return second.values;
+        }
+
+        Block block = new Block(key, slice.decompress(index));
+        cache[set + 1] = first;
+        cache[set] = block;
+        return block.values;
+    }
+
+    /**
+     * Writes the results of every placement of a material signature, replacing
+     * the file at once so that it is never left half written.
+     *
+     * @param directory the directory of the files
+     * @param material  the material signature
+     * @param values    the result of each board, indexed as in
+     *                  {@link Material#getIndex(BitBoard)}
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File directory, Material material, byte[] values) throws IOException {
+        int blocks = (values.length + EndgameDatabase.BLOCK_BOARDS - 1) / EndgameDatabase.BLOCK_BOARDS;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        long[] offsets = new long[blocks + 1];
+        byte[] block = new byte[EndgameDatabase.BLOCK_BYTES];
+        byte[] compressed = new byte[2 * EndgameDatabase.BLOCK_BYTES];
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        for (int i = 0; i < blocks; i++) {
+            int start = i * EndgameDatabase.BLOCK_BOARDS;
+            int end = Math.min(start + EndgameDatabase.BLOCK_BOARDS, values.length);
+            Arrays.fill(block, (byte) 0);
+            for (int j = start; j < end; j++) {
+                block[(j - start) >>> 2] |= values[j] << (2 * ((j - start) & 3));
+            }
+            deflater.reset();
+            deflater.setInput(block);
+            deflater.finish();
+            while (!deflater.finished()) {
+                data.write(compressed, 0, deflater.deflate(compressed));
+            }
+            offsets[i + 1] = data.size();
+        }
+        deflater.end();
+
+        // the offsets are relative to the end of the header
+        ByteBuffer header = ByteBuffer.allocate(4 + 8 * offsets.length);
+        header.putInt(blocks);
+        for (long offset : offsets) {
+            header.putLong(offset);
+        }
+        File file = new File(directory, material.getFileName());
+        File temp = new File(directory, material.getFileName() + ".tmp");
+        try (RandomAccessFile output = new RandomAccessFile(temp, "rw")) {
+            output.setLength(0);
+            output.write(header.array());
+            output.write(data.toByteArray());
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // inner class
+    private static class Block {
+        private final long key; // of the slice and the index of the block within it
+        private final byte[] values;
+
+        public Block(long key, byte[] values) {
+            this.key = key;
+            this.values = values;
+        }
+    }
+
+    // inner class
+    private static class Slice {
+        private final int id;
+        private final Material material;
+        private final ByteBuffer buffer;
+        private final int headerBytes;
+
+        public Slice(int id, Material material, ByteBuffer buffer) {
+            this.id = id;
+            this.material = material;
+            this.buffer = buffer;
+            this.headerBytes = 4 + 8 * (buffer.getInt(0) + 1);
+        }
+
+        /**
+         * Returns the boards of a block packed two bits per board.
+         */
+        public byte[] decompress(int index) {
+            long start = this.buffer.getLong(4 + 8 * index);
+            long end = this.buffer.getLong(4 + 8 * (index + 1));
+            byte[] compressed = new byte[(int) (end - start)];
+            ByteBuffer view = this.buffer.duplicate();
+            view.position(this.headerBytes + (int) start);
+            view.get(compressed);
+
+            byte[] block = new byte[EndgameDatabase.BLOCK_BYTES];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                inflater.inflate(block);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupted endgame database block", e);
+            } finally {
+                inflater.end();
+            }
+            return block;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,371 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code EndgameGenerator} class builds the endgame databases of every
+ * material signature with up to a given number of pieces by retrograde
+ * analysis, without a user interface.
+ * <p>
+ * A board is won if a move leads to a board lost for the opponent, and lost if
+ * the player to move cannot move or every move leads to a board won by the
+ * opponent. A first pass over every board of a signature resolves the boards
+ * whose moves all leave the signature or end the game. Each following pass
+ * only goes back from the boards resolved by the previous one: the boards
+ * their last move may have come from are found by taking back a step of a
+ * piece of the opponent, and only those are resolved again. The boards left
+ * unresolved once a pass resolves none are drawn. Captures and promotions lead
+ * to signatures with fewer pieces or fewer pawns, so signatures are generated
+ * in that order, those with the same number of pieces and pawns in parallel,
+ * and each pass is split between the threads of a fork/join pool. The file of
+ * each signature is written as soon as it is generated and skipped when
+ * generating again, so an interrupted generation resumes from the signatures
+ * left.
+ */
+public class EndgameGenerator {
+    private static final int CHUNK_SIZE = 1 << 12; // a multiple of the boards per word of the bit sets
+    private static final int MAX_CACHE_MEGABYTES = 1 << 10;
+
+    private File directory;
+    private int maxPieces;
+    private ForkJoinPool pool;
+    private EndgameDatabase database;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: EndgameGenerator <pieces> <directory> [threads]");
+            System.exit(1);
+        }
+        int pieces = Integer.parseInt(args[0]);
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        new EndgameGenerator(new File(args[1]), pieces, threads).generate();
+    }
+
+    /**
+     * Creates a generator of the databases with up to a given number of pieces.
+     *
+     * @param directory the directory the files are written to
+     * @param maxPieces the largest number of pieces on the boards generated
+     * @param threads   the number of threads generating the databases
+     */
+    public EndgameGenerator(File directory, int maxPieces, int threads) {
+        this.directory = directory;
+        this.maxPieces = maxPieces;
+        this.pool = new ForkJoinPool(Math.max(threads, 1));
+    }
+
+    /**
+     * Generates the databases that are not written yet.
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    public void generate() throws IOException {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Cannot create " + this.directory);
+        }
+        // keep up to a quarter of the heap for the decompressed blocks
+        int cacheMegabytes = (int) Math.min(Runtime.getRuntime().maxMemory() >>> 22,
+                EndgameGenerator.MAX_CACHE_MEGABYTES);
+        this.database = new EndgameDatabase(this.directory, cacheMegabytes);
+        try {
+            for (int pieces = 2; pieces <= this.maxPieces; pieces++) {
+                for (int pawns = 0; pawns <= pieces; pawns++) {
+                    final List<Slice> slices = new ArrayList<>();
+                    for (Material material : EndgameGenerator.getMaterials(pieces, pawns)) {
+                        if (!new File(this.directory, material.getFileName()).exists()) {
+                            slices.add(new Slice(material));
+                        }
+                    }
+                    this.pool.invoke(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            RecursiveAction.invokeAll(slices);
+                        }
+                    });
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the material signatures with a given number of pieces and pawns in
+     * which both sides have pieces.
+     */
+    private static List<Material> getMaterials(int pieces, int pawns) {
+        List<Material> materials = new ArrayList<>();
+        int kings = pieces - pawns;
+        for (int blackPawns = 0; blackPawns <= pawns; blackPawns++) {
+            for (int blackKings = 0; blackKings <= kings; blackKings++) {
+                int redPawns = pawns - blackPawns;
+                int redKings = kings - blackKings;
+                if ((blackPawns + blackKings > 0) && (redPawns + redKings > 0)) {
+                    materials.add(new Material(blackPawns, blackKings, redPawns, redKings));
+                }
+            }
+        }
+        return materials;
+    }
+
+    // inner class
+    private class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Material material;
+        private byte[] values; // unresolved boards are drawn
+        private AtomicLongArray resolved; // one bit per board resolved by the last pass
+        private AtomicLongArray candidates; // one bit per board to be resolved by the next pass
+
+        public Slice(Material material) {
+            this.material = material;
+        }
+
+        @Override
+        protected void compute() {
+            long startTime = System.currentTimeMillis();
+            long size = 2 * this.material.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Too many boards with material " + this.material);
+            }
+            this.values = new byte[(int) size];
+            this.resolved = new AtomicLongArray((int) ((size + 63) >>> 6));
+            this.candidates = new AtomicLongArray(this.resolved.length());
+
+            int passes = 1;
+            long count = new Pass(this, Pass.RESOLVE_ALL, 0, this.values.length).invoke();
+            while (count > 0) {
+                new Pass(this, Pass.TAKE_BACK, 0, this.values.length).invoke();
+                count = new Pass(this, Pass.RESOLVE_CANDIDATES, 0, this.values.length).invoke();
+                passes++;
+            }
+
+            try {
+                EndgameDatabase.write(EndgameGenerator.this.directory, this.material, this.values);
+                EndgameGenerator.this.database.add(this.material);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            long[] counts = new long[4];
+            for (byte value : this.values) {
+                counts[value]++;
+            }
+            System.out.println(this.material + ": " + counts[EndgameDatabase.WIN] + " won, "
+                    + counts[EndgameDatabase.LOSS] + " lost, " + counts[EndgameDatabase.DRAW] + " drawn in "
+                    + passes + " passes, " + (System.currentTimeMillis() - startTime) + " ms");
+            this.values = null;
+            this.resolved = null;
+            this.candidates = null;
+        }
+
+        /**
+         * Tries to resolve a board from the results of the boards its moves lead
+         * to.
+         *
+         * @param board a board reused for every index
+         * @return whether the board was resolved
+         */
+        private boolean resolve(int index, BitBoard board, int[] moves) {
+            if (this.values[index] != EndgameDatabase.DRAW) {
+                return false;
+            }
+            if (!this.material.toBoard(index, board)) {
+                this.values[index] = EndgameDatabase.INVALID;
+                return false;
+            }
+
+            int count = board.genMoves(moves);
+            if (count == 0) {
+                this.values[index] = EndgameDatabase.LOSS;
+                return true;
+            }
+            boolean isLost = true;
+            for (int i = 0; i < count; i++) {
+                int record = board.perform(moves[i]);
+                int value = this.lookUp(board);
+                board.undo(moves[i], record);
+                if (value == EndgameDatabase.LOSS) {
+                    this.values[index] = EndgameDatabase.WIN;
+                    return true;
+                }
+                isLost &= (value == EndgameDatabase.WIN);
+            }
+            if (isLost) {
+                this.values[index] = EndgameDatabase.LOSS;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Marks the unresolved boards of this signature from which a step of a
+         * piece leads to a resolved board. A capture or a promotion would have
+         * changed the signature, so only steps that neither capture nor promote
+         * are taken back, some of which were not legal because a capture was
+         * available; resolving those boards again is only wasted work.
+         *
+         * @param board    the resolved board, which is left unchanged
+         * @param previous a board reused for the boards taken back to
+         */
+        private void takeBack(BitBoard board, BitBoard previous) {
+            int side = board.getSide() ^ 1; // who moved last
+            int own = board.getPieces(side);
+            int opp = board.getPieces(side ^ 1);
+            int kings = board.getKings();
+            int empty = ~(own | opp);
+            int bits = own;
+            while (bits != 0) {
+                int sq = Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                boolean isKing = (kings & (1 << sq)) != 0;
+                for (int dir = 0; dir < 4; dir++) {
+                    // a pawn only steps towards the opponent, so it came from behind
+                    boolean isBackward = (dir == BitBoard.UP_LEFT || dir == BitBoard.UP_RIGHT) == (side == 1);
+                    int from = BitBoard.step(dir, sq);
+                    if ((from == -1) || ((empty & (1 << from)) == 0) || (!isKing && !isBackward)) {
+                        continue;
+                    }
+                    int pieces = own ^ (1 << sq) ^ (1 << from);
+                    int previousKings = isKing ? kings ^ (1 << sq) ^ (1 << from) : kings;
+                    if (side == 0) {
+                        previous.set(pieces, opp, previousKings, side);
+                    } else {
+                        previous.set(opp, pieces, previousKings, side);
+                    }
+                    int index = (int) this.material.getIndex(previous);
+                    if (this.values[index] == EndgameDatabase.DRAW) {
+                        EndgameGenerator.setBit(this.candidates, index);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the result of a board reached by a move, which is unresolved
+         * if it has the same material and was not resolved yet.
+         */
+        private int lookUp(BitBoard board) {
+            if (Material.getSignature(board) == this.material.getSignature()) {
+                return this.values[(int) this.material.getIndex(board)];
+            }
+            int value = EndgameGenerator.this.database.probe(board);
+            if (value == EndgameDatabase.UNKNOWN) {
+                throw new IllegalStateException("Material " + Material.of(board) + " is not generated");
+            }
+            return value;
+        }
+    }
+
+    private static void setBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long old = bits.get(word);
+        while (((old & mask) == 0) && !bits.compareAndSet(word, old, old | mask)) {
+            old = bits.get(word);
+        }
+    }
+
+    // inner class
+    private class Pass extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        // what a pass does with the boards of its range
+        private static final int RESOLVE_ALL = 0, TAKE_BACK = 1, RESOLVE_CANDIDATES = 2;
+
+        private final Slice slice;
+        private final int type;
+        private final int start, end;
+
+        public Pass(Slice slice, int type, int start, int end) {
+            this.slice = slice;
+            this.type = type;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns the number of boards resolved within a range of indices, each
+         * range being a whole number of words of the bit sets so that the threads
+         * never clear or set bits of the same word except through
+         * {@link EndgameGenerator#setBit(AtomicLongArray, int)}.
+         */
+        @Override
+        protected Long compute() {
+            if (this.end - this.start > EndgameGenerator.CHUNK_SIZE) {
+                int middle = ((this.start + this.end) >>> 1) & -EndgameGenerator.CHUNK_SIZE;
+                middle = Math.max(middle, this.start + EndgameGenerator.CHUNK_SIZE);
+                Pass left = new Pass(this.slice, this.type, this.start, middle);
+                left.fork();
+                long resolved = new Pass(this.slice, this.type, middle, this.end).compute();
+                return resolved + left.join();
+            }
+
+            BitBoard board = new BitBoard();
+            BitBoard previous = new BitBoard();
+            int[] moves = new int[BitBoard.MAX_MOVES];
+            AtomicLongArray resolvedBits = this.slice.resolved;
+            AtomicLongArray candidateBits = this.slice.candidates;
+            long resolved = 0;
+            for (int word = this.start >>> 6; word < (this.end + 63) >>> 6; word++) {
+                if (this.type == Pass.RESOLVE_ALL) {
+                    long bits = 0;
+                    for (int i = word << 6; i < Math.min((word + 1) << 6, this.end); i++) {
+                        if (this.slice.resolve(i, board, moves)) {
+                            bits |= 1L << i;
+                        }
+                    }
+                    resolvedBits.set(word, bits);
+                    resolved += Long.bitCount(bits);
+                } else if (this.type == Pass.TAKE_BACK) {
+                    long bits = resolvedBits.get(word);
+                    while (bits != 0) {
+                        int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        this.slice.material.toBoard(i, board);
+                        this.slice.takeBack(board, previous);
+                    }
+                } else {
+                    long bits = candidateBits.getAndSet(word, 0);
+                    long resolvedWord = 0;
+                    while (bits != 0) {
+                        int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        if (this.slice.resolve(i, board, moves)) {
+                            resolvedWord |= 1L << i;
+                        }
+                    }
+                    resolvedBits.set(word, resolvedWord);
+                    resolved += Long.bitCount(resolvedWord);
+                }
+            }
+            return resolved;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,320 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * The {@code Engine} class drives the {@code AI} through a line-based text
+ * protocol over the standard input and output, modelled on UCI, so that it can
+ * be run by tournament managers and scripts without a user interface. Boards
+ * are given in FEN and moves in standard numeric notation.
+ * <p>
+ * The commands understood are {@code uci}, {@code isready},
+ * {@code setoption name <Hash|Threads> value <n>}, {@code ucinewgame},
+ * {@code position <startpos|fen <board>> [moves <move>...]},
+ * {@code go [depth <n>] [movetime <ms>] [nodes <n>] [btime <ms>] [wtime <ms>] [infinite]},
+ * {@code stop} and {@code quit}, where black is side 0. While searching, the
+ * engine reports each completed depth with an {@code info} line of the depth,
+ * score, number of boards searched, speed and principal variation, and ends
+ * with a {@code bestmove} line, which an infinite search only sends once it is
+ * stopped. The engine answers {@code isready} even if the AI cannot be
+ * created, reporting the failure in an {@code info string} line.
+ */
+public class Engine implements SearchListener {
+    public static final String NAME = "Checkers " + Checkers.VERSION;
+    public static final String AUTHOR = "Nabeth Ghazi";
+    public static final int MAX_DEPTH = Search.MAX_PLY / 2;
+    public static final int MAX_TABLE_MEGABYTES = 4096, MAX_THREADS = 256;
+
+    private AI ai;
+    private int tableMegabytes;
+    private int threads;
+    private BitBoard board;
+    private Thread searcher;
+    private boolean isInfinite; // whether the best move waits for stop, guarded by this
+    private long startTime; // of the search in progress
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        Engine engine = new Engine();
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = input.readLine()) != null) {
+            if (!engine.execute(line.trim())) {
+                break;
+            }
+        }
+        engine.stopSearch();
+    }
+
+    public Engine() {
+        this.tableMegabytes = AI.TABLE_MEGABYTES;
+        this.threads = AI.THREADS;
+        this.board = new BitBoard();
+    }
+
+    /**
+     * Executes a command.
+     *
+     * @param command the line of the command
+     * @return {@code false} if the command is to quit, otherwise {@code true}
+     */
+    public boolean execute(String command) {
+        String[] tokens = command.split("\\s+");
+        switch (tokens[0]) {
+            case "uci":
+                this.send("id name " + Engine.NAME);
+                this.send("id author " + Engine.AUTHOR);
+                this.send(String.format("option name Hash type spin default %d min 1 max %d", AI.TABLE_MEGABYTES,
+                        Engine.MAX_TABLE_MEGABYTES));
+                this.send(String.format("option name Threads type spin default %d min 1 max %d", AI.THREADS,
+                        Engine.MAX_THREADS));
+                this.send("uciok");
+                break;
+            case "isready":
+                this.getAI(); // reports a failure to create it
+                this.send("readyok");
+                break;
+            case "setoption":
+                this.stopSearch();
+                this.setOption(tokens);
+                break;
+            case "ucinewgame":
+                this.stopSearch();
+                if (this.getAI() != null) {
+                    this.ai.newGame();
+                }
+                break;
+            case "position":
+                this.stopSearch();
+                this.setPosition(tokens);
+                break;
+            case "go":
+                this.stopSearch();
+                this.go(tokens);
+                break;
+            case "stop":
+                this.stopSearch();
+                break;
+            case "quit":
+                return false;
+            default:
+                if (!tokens[0].isEmpty()) {
+                    this.send("info string Unknown command: " + command);
+                }
+                break;
+        }
+        return true;
+    }
+
+    private synchronized void send(String line) {
+        System.out.println(line);
+        System.out.flush();
+    }
+
+    /**
+     * Returns the AI, creating it with the current options if needed.
+     *
+     * @return the AI, or {@code null} if it could not be created
+     */
+    private AI getAI() {
+        if (this.ai == null) {
+            try {
+                this.ai = new AI(Engine.MAX_DEPTH, this.tableMegabytes, this.threads);
+                this.ai.setSearchListener(this);
+            } catch (IOException e) {
+                this.send("info string Failed to read the resources of the AI: " + e.getMessage());
+            }
+        }
+        return this.ai;
+    }
+
+    private void setOption(String[] tokens) {
+        if ((tokens.length != 5) || !tokens[1].equals("name") || !tokens[3].equals("value")) {
+            this.send("info string Invalid option");
+            return;
+        }
+        try {
+            int value = Integer.parseInt(tokens[4]);
+            if (tokens[2].equalsIgnoreCase("Hash")) {
+                this.tableMegabytes = Math.min(Math.max(value, 1), Engine.MAX_TABLE_MEGABYTES);
+            } else if (tokens[2].equalsIgnoreCase("Threads")) {
+                this.threads = Math.min(Math.max(value, 1), Engine.MAX_THREADS);
+            } else {
+                this.send("info string Unknown option: " + tokens[2]);
+                return;
+            }
+            this.ai = null; // recreated with the option
+        } catch (NumberFormatException e) {
+            this.send("info string Invalid value: " + tokens[4]);
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        BitBoard board;
+        try {
+            if ((tokens.length > 1) && tokens[1].equals("startpos")) {
+                board = new BitBoard();
+                i = 2;
+            } else if ((tokens.length > 2) && tokens[1].equals("fen")) {
+                board = BitBoard.fromFen(tokens[2]);
+                i = 3;
+            } else {
+                this.send("info string Invalid position");
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            this.send("info string Invalid FEN: " + tokens[2]);
+            return;
+        }
+
+        if ((i < tokens.length) && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                int move = board.parseMove(tokens[i]);
+                if (move == 0) {
+                    this.send("info string Illegal move: " + tokens[i]);
+                    return;
+                }
+                board.perform(move);
+            }
+        }
+        this.board = board;
+    }
+
+    private void go(String[] tokens) {
+        final AI ai = this.getAI();
+        if (ai == null) {
+            return;
+        }
+        int depth = Engine.MAX_DEPTH;
+        long moveTime = -1;
+        long nodeLimit = Long.MAX_VALUE;
+        long[] clocks = { Long.MAX_VALUE, Long.MAX_VALUE };
+        boolean isInfinite = false;
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "depth":
+                        depth = Math.min(Math.max(Integer.parseInt(tokens[++i]), 1), Engine.MAX_DEPTH);
+                        break;
+                    case "movetime":
+                        moveTime = Long.parseLong(tokens[++i]);
+                        break;
+                    case "nodes":
+                        nodeLimit = Long.parseLong(tokens[++i]);
+                        break;
+                    case "btime":
+                        clocks[0] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "wtime":
+                        clocks[1] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "infinite":
+                        isInfinite = true;
+                        break;
+                    default: // unsupported limits
+                        break;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            this.send("info string Invalid search limits");
+            return;
+        }
+
+        this.startTime = System.currentTimeMillis();
+        final long[] deadlines = (moveTime >= 0) ? new long[] { this.startTime + moveTime, this.startTime + moveTime }
+                : AI.getDeadlines(clocks[this.board.getSide()]);
+        final BitBoard root = new BitBoard(this.board);
+        final int maxDepth = depth;
+        final long maxNodes = nodeLimit;
+        synchronized (this) {
+            this.isInfinite = isInfinite;
+        }
+        this.searcher = new Thread() {
+            @Override
+            public void run() {
+                int move = ai.analyze(root, maxDepth, deadlines[0], deadlines[1], maxNodes);
+                Engine.this.awaitStop();
+                Engine.this.send("bestmove " + ((move == 0) ? "(none)" : BitBoard.toNotation(move)));
+            }
+        };
+        this.searcher.start();
+    }
+
+    /**
+     * Waits until an infinite search is stopped, even if it has already reached
+     * its maximum depth.
+     */
+    private synchronized void awaitStop() {
+        try {
+            while (this.isInfinite) {
+                this.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the search in progress, if any, and waits for its best move to be
+     * sent.
+     */
+    private void stopSearch() {
+        if (this.searcher == null) {
+            return;
+        }
+        synchronized (this) {
+            this.isInfinite = false;
+            this.notifyAll();
+        }
+        try {
+            // repeated in case the search had not started yet
+            while (this.searcher.isAlive()) {
+                this.ai.stop();
+                this.searcher.join(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.searcher = null;
+    }
+
+    @Override
+    public void iterationCompleted(int depth, int score, int[] principalVariation) {
+        long time = Math.max(System.currentTimeMillis() - this.startTime, 1);
+        long nodes = this.ai.getNodes();
+        StringBuilder line = new StringBuilder();
+        line.append("info depth ").append(depth);
+        if (Math.abs(score) > Search.WIN - Search.MAX_PLY) {
+            int plies = Search.WIN - Math.abs(score);
+            line.append(" score mate ").append(((score > 0) ? 1 : -1) * (plies + 1) / 2);
+        } else {
+            line.append(" score cp ").append(score);
+        }
+        line.append(" nodes ").append(nodes).append(" nps ").append(nodes * 1000 / time).append(" time ")
+                .append(time).append(" pv");
+        for (int move : principalVariation) {
+            line.append(' ').append(BitBoard.toNotation(move));
+        }
+        this.send(line.toString());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ * The {@code EvaluationWeights} class encapsulates the weights of the terms of
+ * the heuristic evaluation of a board, in hundredths of a pawn. Most terms have
+ * a middlegame and an endgame weight, between which the evaluation is
+ * interpolated by the number of pieces left on the board.
+ */
+public class EvaluationWeights implements WritableToTxt {
+    // material
+    public static final int PAWN_MG = 0, PAWN_EG = 1, KING_MG = 2, KING_EG = 3;
+    // per row a pawn has advanced
+    public static final int ADVANCEMENT_MG = 4, ADVANCEMENT_EG = 5;
+    // per pawn left on its own back row
+    public static final int BACK_RANK_MG = 6, BACK_RANK_EG = 7;
+    // per pawn and per king on the centre squares
+    public static final int CENTRE_MG = 8, CENTRE_EG = 9, KING_CENTRE_MG = 10, KING_CENTRE_EG = 11;
+    // per pawn with no opponent piece between it and the promotion row
+    public static final int RUNAWAY = 12;
+    // per empty square the kings can step to
+    public static final int KING_MOBILITY = 13;
+    public static final int COUNT = 14;
+
+    private static final int[] DEFAULTS = { 100, 100, 130, 150, 1, 6, 12, 0, 8, 2, 6, 10, 40, 2 };
+
+    private int[] weights;
+
+    public EvaluationWeights() {
+        this.weights = Arrays.copyOf(EvaluationWeights.DEFAULTS, EvaluationWeights.COUNT);
+    }
+
+    public EvaluationWeights(EvaluationWeights other) {
+        this.weights = Arrays.copyOf(other.weights, EvaluationWeights.COUNT);
+    }
+
+    public EvaluationWeights(String fileName) throws FileNotFoundException {
+        this.weights = new int[EvaluationWeights.COUNT];
+        Scanner input = new Scanner(new File(fileName));
+        for (int i = 0; i < EvaluationWeights.COUNT; i++) {
+            this.weights[i] = input.nextInt();
+        }
+        input.close();
+    }
+
+    /**
+     * Returns whether a term is weighted by its endgame weight rather than its
+     * middlegame weight, the terms of the piece-square tables alternating between
+     * the two.
+     */
+    public static boolean isEndgameTerm(int term) {
+        return (term < EvaluationWeights.RUNAWAY) && (term % 2 == 1);
+    }
+
+    /**
+     * Returns the weight of a term.
+     *
+     * @param term the index of the term, such as {@link #PAWN_MG}
+     */
+    public int get(int term) {
+        return this.weights[term];
+    }
+
+    public void set(int term, int weight) {
+        this.weights[term] = weight;
+    }
+
+    @Override
+    public void writeToTxt(String fileName) throws FileNotFoundException {
+        PrintWriter output = new PrintWriter(new FileOutputStream(new File(fileName), false));
+        for (int weight : this.weights) {
+            output.println(weight);
+        }
+        output.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+/**
+ * The {@code Evaluator} class encapsulates the heuristic evaluation of boards
+ * used by an {@code AI}: the piece-square values and leaf weights derived from
+ * a set of {@code EvaluationWeights}, or a neural network evaluating the boards
+ * instead. An evaluator never changes once created, so it can be shared by the
+ * threads and boards of one player while another player in the same process
+ * evaluates with its own.
+ */
+public class Evaluator {
+    public static final Evaluator DEFAULT = new Evaluator(new EvaluationWeights(), null);
+
+    // with the middlegame and endgame values of a term packed into the low and
+    // high halves of an int so that both are summed at once
+    private final int[][][] pieceSquares; // indexed by side, whether the piece is a king and square
+    private final int runaway, kingMobility;
+    private final NeuralNetwork network;
+
+    /**
+     * Creates an evaluator from a set of weights and an optional network.
+     *
+     * @param weights the weights, which are copied
+     * @param network the network evaluating the boards instead of the weights,
+     *                or {@code null}
+     */
+    public Evaluator(EvaluationWeights weights, NeuralNetwork network) {
+        this.pieceSquares = new int[2][2][BitBoard.SQUARES];
+        for (int king = 0; king < 2; king++) {
+            for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+                int mg = 0;
+                int eg = 0;
+                for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+                    int value = BitBoard.getPieceTerm(king, sq, term) * weights.get(term);
+                    if (EvaluationWeights.isEndgameTerm(term)) {
+                        eg += value;
+                    } else {
+                        mg += value;
+                    }
+                }
+                // side 1 sees the board rotated by half a turn
+                this.pieceSquares[0][king][sq] = Evaluator.packTerm(mg, eg);
+                this.pieceSquares[1][king][BitBoard.SQUARES - 1 - sq] = -Evaluator.packTerm(mg, eg);
+            }
+        }
+        this.runaway = weights.get(EvaluationWeights.RUNAWAY);
+        this.kingMobility = weights.get(EvaluationWeights.KING_MOBILITY);
+        this.network = network;
+    }
+
+    private static int packTerm(int mg, int eg) {
+        return (eg << 16) + mg;
+    }
+
+    /**
+     * Returns the packed middlegame and endgame value of a piece on a square,
+     * from the perspective of side 0.
+     */
+    public int getPieceSquare(int side, int king, int sq) {
+        return this.pieceSquares[side][king][sq];
+    }
+
+    /**
+     * Returns the weight of a pawn that can no longer be stopped from promoting.
+     */
+    public int getRunaway() {
+        return this.runaway;
+    }
+
+    /**
+     * Returns the weight of an empty square a king can step to.
+     */
+    public int getKingMobility() {
+        return this.kingMobility;
+    }
+
+    /**
+     * Returns the network evaluating the boards instead of the weights, or
+     * {@code null} if there is none.
+     */
+    public NeuralNetwork getNeuralNetwork() {
+        return this.network;
+    }
+}
\ No newline at end of file
@@ -87,7 +87,7 @@ public class GameRunner extends Thread {
         if (this.game.isPvP() == true) {
             move = this.game.getClient().readMove();
         } else {
-            move = this.game.getAIPlayer().decide(this.game.getBoard());
+            move = this.game.getAIPlayer().decide(this.game.getBoard(), this.game.getOppTimer());
         }
         // perform move
         if (move.isCapturing()) {
@@ -96,6 +96,10 @@ public class GameRunner extends Thread {
             this.playSound(Resources.ORDINARY_MOVE);
         }
         this.game.getBoard().perform(move);
+        // think on the player's time, unless the game is over
+        if ((this.game.isPvP() == false) && !this.game.getBoard().gameIsOver()) {
+            this.game.getAIPlayer().ponder(this.game.getBoard());
+        }
     }
 
     public void endGame() {
@@ -0,0 +1,236 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.util.Arrays;
+
+/**
+ * The {@code Material} class encapsulates the material signature of an endgame,
+ * which is the number of pawns and kings of each side, and numbers every
+ * placement of that material together with the side to move. Each group of
+ * pieces is numbered as a combination of the squares it may stand on, pawns
+ * never standing on their promotion row, so a few numbers stand for
+ * overlapping pieces and do not describe a board.
+ */
+public class Material {
+    public static final int SIGNATURES = 1 << 16; // packed with 4 bits per group of pieces
+    private static final int PAWN_SQUARES = 28;
+    private static final int MAX_GROUP = 12;
+    private static final long[][] BINOMIALS = new long[BitBoard.SQUARES + 1][Material.MAX_GROUP + 1];
+
+    // the lowest square a pawn of each side may stand on
+    private static final int[] PAWN_OFFSETS = { 4, 0 };
+
+    private int[] pawns; // indexed by side
+    private int[] kings; // indexed by side
+    private long size;
+
+    static {
+        for (int n = 0; n <= BitBoard.SQUARES; n++) {
+            Material.BINOMIALS[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, Material.MAX_GROUP); k++) {
+                Material.BINOMIALS[n][k] = Material.BINOMIALS[n - 1][k - 1]
+                        + ((k <= n - 1) ? Material.BINOMIALS[n - 1][k] : 0);
+            }
+        }
+    }
+
+    public Material(int blackPawns, int blackKings, int redPawns, int redKings) {
+        this.pawns = new int[] { blackPawns, redPawns };
+        this.kings = new int[] { blackKings, redKings };
+        this.size = Material.BINOMIALS[Material.PAWN_SQUARES][blackPawns]
+                * Material.BINOMIALS[Material.PAWN_SQUARES][redPawns] * Material.BINOMIALS[BitBoard.SQUARES][blackKings]
+                * Material.BINOMIALS[BitBoard.SQUARES][redKings];
+    }
+
+    /**
+     * Returns the material signature of a board packed into an {@code int} of
+     * four bits per group of pieces, in the order of the file name.
+     */
+    public static int getSignature(BitBoard board) {
+        int kings = board.getKings();
+        int black = board.getPieces(0);
+        int red = board.getPieces(1);
+        return Material.pack(Integer.bitCount(black & ~kings), Integer.bitCount(black & kings),
+                Integer.bitCount(red & ~kings), Integer.bitCount(red & kings));
+    }
+
+    /**
+     * Returns the material signature packed as in {@link #getSignature(BitBoard)}.
+     */
+    public int getSignature() {
+        return Material.pack(this.pawns[0], this.kings[0], this.pawns[1], this.kings[1]);
+    }
+
+    private static int pack(int blackPawns, int blackKings, int redPawns, int redKings) {
+        return blackPawns | (blackKings << 4) | (redPawns << 8) | (redKings << 12);
+    }
+
+    /**
+     * Returns the material signature of a board.
+     */
+    public static Material of(BitBoard board) {
+        int kings = board.getKings();
+        int black = board.getPieces(0);
+        int red = board.getPieces(1);
+        return new Material(Integer.bitCount(black & ~kings), Integer.bitCount(black & kings),
+                Integer.bitCount(red & ~kings), Integer.bitCount(red & kings));
+    }
+
+    public int getPawns(int side) {
+        return this.pawns[side];
+    }
+
+    public int getKings(int side) {
+        return this.kings[side];
+    }
+
+    public int getPieces() {
+        return this.pawns[0] + this.kings[0] + this.pawns[1] + this.kings[1];
+    }
+
+    /**
+     * Returns the number of placements of this material for each side to move.
+     */
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of a board with this material, placements with black to
+     * move coming before those with red to move.
+     */
+    public long getIndex(BitBoard board) {
+        int kings = board.getKings();
+        long index = 0;
+        for (int side = 0; side < 2; side++) {
+            int pawns = (board.getPieces(side) & ~kings) >>> Material.PAWN_OFFSETS[side];
+            index = index * Material.BINOMIALS[Material.PAWN_SQUARES][this.pawns[side]] + Material.rank(pawns);
+        }
+        for (int side = 0; side < 2; side++) {
+            index = index * Material.BINOMIALS[BitBoard.SQUARES][this.kings[side]]
+                    + Material.rank(board.getPieces(side) & kings);
+        }
+        return board.getSide() * this.size + index;
+    }
+
+    /**
+     * Returns the board numbered by an index.
+     *
+     * @param index a number between {@code 0} and twice the {@link #size()}
+     * @return the {@code BitBoard}, or {@code null} if the index stands for
+     *         overlapping pieces
+     */
+    public BitBoard toBoard(long index) {
+        BitBoard board = new BitBoard();
+        return this.toBoard(index, board) ? board : null;
+    }
+
+    /**
+     * Sets a board to the placement numbered by an index.
+     *
+     * @param index a number between {@code 0} and twice the {@link #size()}
+     * @param board the board to be set, which is left unchanged if the index
+     *              stands for overlapping pieces
+     * @return whether the index stands for a board
+     */
+    public boolean toBoard(long index, BitBoard board) {
+        int side = (int) (index / this.size);
+        index %= this.size;
+        long count = Material.BINOMIALS[BitBoard.SQUARES][this.kings[1]];
+        int redKings = Material.unrank(index % count, this.kings[1]);
+        index /= count;
+        count = Material.BINOMIALS[BitBoard.SQUARES][this.kings[0]];
+        int blackKings = Material.unrank(index % count, this.kings[0]);
+        index /= count;
+        count = Material.BINOMIALS[Material.PAWN_SQUARES][this.pawns[1]];
+        int redPawns = Material.unrank(index % count, this.pawns[1]) << Material.PAWN_OFFSETS[1];
+        index /= count;
+        count = Material.BINOMIALS[Material.PAWN_SQUARES][this.pawns[0]];
+        int blackPawns = Material.unrank(index % count, this.pawns[0]) << Material.PAWN_OFFSETS[0];
+
+        int black = blackPawns | blackKings;
+        int red = redPawns | redKings;
+        if (Integer.bitCount(black | red) != this.getPieces()) {
+            return false;
+        }
+        board.set(black, red, blackKings | redKings, side);
+        return true;
+    }
+
+    /**
+     * Returns the number of a set of squares among the sets of the same size, in
+     * colexicographic order.
+     */
+    private static long rank(int squares) {
+        long rank = 0;
+        for (int k = 1; squares != 0; k++) {
+            int sq = Integer.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            rank += Material.BINOMIALS[sq][k];
+        }
+        return rank;
+    }
+
+    private static int unrank(long rank, int count) {
+        int squares = 0;
+        int sq = BitBoard.SQUARES;
+        for (int k = count; k > 0; k--) {
+            do {
+                sq--;
+            } while (Material.BINOMIALS[sq][k] > rank);
+            rank -= Material.BINOMIALS[sq][k];
+            squares |= 1 << sq;
+        }
+        return squares;
+    }
+
+    /**
+     * Returns the name of the file storing the endgame database of this material,
+     * made of the number of black pawns, black kings, red pawns and red kings.
+     */
+    public String getFileName() {
+        return "" + this.pawns[0] + this.kings[0] + this.pawns[1] + this.kings[1] + ".edb";
+    }
+
+    @Override
+    public int hashCode() {
+        final int PRIME = 31;
+        int hash = 7;
+        hash = PRIME * hash + Arrays.hashCode(this.pawns);
+        hash = PRIME * hash + Arrays.hashCode(this.kings);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (this.getClass() != obj.getClass())
+            return false;
+        Material other = (Material) obj;
+        return Arrays.equals(this.pawns, other.pawns) && Arrays.equals(this.kings, other.kings);
+    }
+
+    @Override
+    public String toString() {
+        return this.getFileName().substring(0, 4);
+    }
+}
\ No newline at end of file
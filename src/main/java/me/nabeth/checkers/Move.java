@@ -22,14 +22,16 @@ import java.awt.Graphics2D;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 /**
  * The {@code Move} class encapsulates a checkers move in the format of its
- * source, skipped, and destination position.
+ * source, skipped, and destination position, where a multiple capture skips
+ * several positions in the order they are jumped.
  */
 public class Move implements Visualizable, Serializable {
     private Position src;
-    private Position skip;
+    private Position[] skips;
     private Position dest;
 
     public Move() {
@@ -38,15 +40,27 @@ public class Move implements Visualizable, Serializable {
     public Move(Position src, Position dest) {
         this.src = src;
         this.dest = dest;
-        if (this.isCapturing()) {
-            this.skip = new Position((src.getRow() + dest.getRow()) / 2, (src.getCol() + dest.getCol()) / 2);
+        if ((Math.abs(src.getRow() - dest.getRow()) == 2) && (Math.abs(src.getCol() - dest.getCol()) == 2)) {
+            this.skips = new Position[] {
+                    new Position((src.getRow() + dest.getRow()) / 2, (src.getCol() + dest.getCol()) / 2) };
+        } else {
+            this.skips = new Position[0];
         }
     }
 
+    public Move(Position src, Position[] skips, Position dest) {
+        this.src = src;
+        this.skips = skips;
+        this.dest = dest;
+    }
+
     public Move(Move other) {
         if (other != null) {
             this.src = new Position(other.src);
-            this.skip = new Position(other.skip);
+            this.skips = new Position[other.skips.length];
+            for (int i = 0; i < this.skips.length; i++) {
+                this.skips[i] = new Position(other.skips[i]);
+            }
             this.dest = new Position(other.dest);
         }
     }
@@ -54,20 +68,32 @@ public class Move implements Visualizable, Serializable {
     /**
      * Returns whether or not a move captures an opponent piece.
      * 
-     * @return {@code true} if the destination is two squares away from the source
-     *         both horizontally and vertically, otherwise {@code false}
+     * @return {@code true} if at least one position is skipped, otherwise
+     *         {@code false}
      */
     public boolean isCapturing() {
-        return (Math.abs(this.src.getRow() - this.dest.getRow()) == 2)
-                && (Math.abs(this.src.getCol() - this.dest.getCol()) == 2);
+        return this.skips.length > 0;
     }
 
     public Position getSrc() {
         return this.src;
     }
 
+    /**
+     * Returns the first position skipped by this move.
+     * 
+     * @return the skipped {@code Position}, or {@code null} if this move does not
+     *         capture
+     */
     public Position getSkip() {
-        return this.skip;
+        if (this.isCapturing()) {
+            return this.skips[0];
+        }
+        return null;
+    }
+
+    public Position[] getSkips() {
+        return this.skips;
     }
 
     public Position getDest() {
@@ -84,15 +110,19 @@ public class Move implements Visualizable, Serializable {
     public void writeObject(OutputStream output) throws IOException {
         output.write(this.src.toByte());
         output.write(this.dest.toByte());
+        output.write(this.skips.length);
+        for (Position skip : this.skips) {
+            output.write(skip.toByte());
+        }
     }
 
     @Override
     public void readObject(InputStream input) throws IOException, ClassNotFoundException {
         this.src = Position.toPosition((byte) input.read());
         this.dest = Position.toPosition((byte) input.read());
-        if (this.isCapturing()) {
-            this.skip = new Position((this.src.getRow() + this.dest.getRow()) / 2,
-                    (this.src.getCol() + this.dest.getCol()) / 2);
+        this.skips = new Position[input.read()];
+        for (int i = 0; i < this.skips.length; i++) {
+            this.skips[i] = Position.toPosition((byte) input.read());
         }
     }
 
@@ -101,7 +131,7 @@ public class Move implements Visualizable, Serializable {
         final int PRIME = 31;
         int hash = 7;
         hash = PRIME * hash + ((this.dest == null) ? 0 : this.dest.hashCode());
-        hash = PRIME * hash + ((this.skip == null) ? 0 : this.skip.hashCode());
+        hash = PRIME * hash + Arrays.hashCode(this.skips);
         hash = PRIME * hash + ((this.src == null) ? 0 : this.src.hashCode());
         return hash;
     }
@@ -120,10 +150,7 @@ public class Move implements Visualizable, Serializable {
                 return false;
         } else if (!this.dest.equals(other.dest))
             return false;
-        if (this.skip == null) {
-            if (other.skip != null)
-                return false;
-        } else if (!this.skip.equals(other.skip))
+        if (!Arrays.equals(this.skips, other.skips))
             return false;
         if (this.src == null) {
             if (other.src != null)
@@ -0,0 +1,188 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The {@code NeuralNetwork} class evaluates boards with a small quantized
+ * neural network. Its input is one feature per combination of piece colour,
+ * piece type and square, seen from the perspective of each side. The first
+ * layer maps the features to an accumulator of {@code short}s per perspective,
+ * which is updated as pieces are added and removed instead of being recomputed
+ * for every board. The accumulators of both perspectives, the one of the player
+ * to move first, pass through a clipped ReLU into a single output neuron.
+ * <p>
+ * The network is read from a binary file made of a header of three
+ * {@code int}s (the magic number, the number of hidden neurons and the output
+ * scale) followed by the first layer weights as {@code short}s, feature after
+ * feature, the first layer biases as {@code short}s, the output weights as
+ * {@code byte}s and the output bias as an {@code int}, all big-endian.
+ * <p>
+ * The loops over the hidden neurons work on plain {@code short} arrays so that
+ * the JIT compiler vectorizes them on hosts with SIMD instructions.
+ */
+public class NeuralNetwork {
+    public static final int MAGIC = 0x434B4E4E; // "CKNN"
+    public static final int FEATURES = 4 * BitBoard.SQUARES;
+    public static final int ACTIVATION_MAX = 127; // of the clipped ReLU, in first layer units
+    public static final int OUTPUT_WEIGHT_SCALE = 64; // output weight of 1.0
+
+    private int hidden;
+    private int scale; // of the output, in hundredths of a pawn
+    private short[] featureWeights; // indexed by feature, then hidden neuron
+    private short[] featureBiases;
+    private byte[] outputWeights; // of the player to move, then of the opponent
+    private int outputBias;
+
+    /**
+     * Reads a network from a file.
+     *
+     * @param file the file of the network
+     * @throws IOException if the file cannot be read or is not a network
+     */
+    public NeuralNetwork(File file) throws IOException {
+        ByteBuffer buffer;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+        }
+        if ((buffer.remaining() < 12) || (buffer.getInt() != NeuralNetwork.MAGIC)) {
+            throw new IOException("Not a neural network file: " + file);
+        }
+        this.hidden = buffer.getInt();
+        this.scale = buffer.getInt();
+        long size = 2L * NeuralNetwork.FEATURES * this.hidden + 2L * this.hidden + 2L * this.hidden + 4;
+        if ((this.hidden <= 0) || (buffer.remaining() != size)) {
+            throw new IOException("Corrupt neural network file: " + file);
+        }
+        this.featureWeights = new short[NeuralNetwork.FEATURES * this.hidden];
+        buffer.asShortBuffer().get(this.featureWeights);
+        buffer.position(buffer.position() + 2 * this.featureWeights.length);
+        this.featureBiases = new short[this.hidden];
+        buffer.asShortBuffer().get(this.featureBiases);
+        buffer.position(buffer.position() + 2 * this.hidden);
+        this.outputWeights = new byte[2 * this.hidden];
+        buffer.get(this.outputWeights);
+        this.outputBias = buffer.getInt();
+    }
+
+    /**
+     * Returns the index of the first weight of a feature for a perspective, side
+     * 1 seeing the board rotated by half a turn.
+     */
+    private int getRow(int perspective, int side, int king, int sq) {
+        if (perspective == 1) {
+            sq = BitBoard.SQUARES - 1 - sq;
+        }
+        return ((((side ^ perspective) << 1) | king) * BitBoard.SQUARES + sq) * this.hidden;
+    }
+
+    /**
+     * Returns the accumulators of a board without any pieces, to which the pieces
+     * are then added.
+     */
+    public short[] newAccumulator() {
+        short[] accumulator = new short[2 * this.hidden];
+        System.arraycopy(this.featureBiases, 0, accumulator, 0, this.hidden);
+        System.arraycopy(this.featureBiases, 0, accumulator, this.hidden, this.hidden);
+        return accumulator;
+    }
+
+    /**
+     * Adds a piece to the accumulators of both perspectives.
+     *
+     * @param accumulator the accumulators of the board
+     * @param side        the side of the piece
+     * @param king        {@code 1} if the piece is a king, otherwise {@code 0}
+     * @param sq          the square of the piece
+     */
+    public void add(short[] accumulator, int side, int king, int sq) {
+        for (int perspective = 0; perspective < 2; perspective++) {
+            int row = this.getRow(perspective, side, king, sq);
+            int offset = perspective * this.hidden;
+            for (int i = 0; i < this.hidden; i++) {
+                accumulator[offset + i] += this.featureWeights[row + i];
+            }
+        }
+    }
+
+    /**
+     * Removes a piece from the accumulators of both perspectives.
+     */
+    public void remove(short[] accumulator, int side, int king, int sq) {
+        for (int perspective = 0; perspective < 2; perspective++) {
+            int row = this.getRow(perspective, side, king, sq);
+            int offset = perspective * this.hidden;
+            for (int i = 0; i < this.hidden; i++) {
+                accumulator[offset + i] -= this.featureWeights[row + i];
+            }
+        }
+    }
+
+    /**
+     * Moves a piece in the accumulators of both perspectives, in a single pass
+     * over each.
+     *
+     * @param accumulator the accumulators of the board
+     * @param side        the side of the piece
+     * @param srcKing     {@code 1} if the piece was a king, otherwise {@code 0}
+     * @param src         the square the piece leaves
+     * @param destKing    {@code 1} if the piece is a king after the move,
+     *                    otherwise {@code 0}
+     * @param dest        the square the piece lands on
+     */
+    public void move(short[] accumulator, int side, int srcKing, int src, int destKing, int dest) {
+        for (int perspective = 0; perspective < 2; perspective++) {
+            int srcRow = this.getRow(perspective, side, srcKing, src);
+            int destRow = this.getRow(perspective, side, destKing, dest);
+            int offset = perspective * this.hidden;
+            for (int i = 0; i < this.hidden; i++) {
+                accumulator[offset + i] += this.featureWeights[destRow + i] - this.featureWeights[srcRow + i];
+            }
+        }
+    }
+
+    /**
+     * Evaluates a board from its accumulators.
+     *
+     * @param accumulator the accumulators of the board
+     * @param side        the player to move
+     * @return the evaluation from the perspective of the player to move, in
+     *         hundredths of a pawn
+     */
+    public int evaluate(short[] accumulator, int side) {
+        int own = side * this.hidden;
+        int opp = (side ^ 1) * this.hidden;
+        int sum = 0;
+        for (int i = 0; i < this.hidden; i++) {
+            int ownActivation = Math.min(Math.max(accumulator[own + i], 0), NeuralNetwork.ACTIVATION_MAX);
+            int oppActivation = Math.min(Math.max(accumulator[opp + i], 0), NeuralNetwork.ACTIVATION_MAX);
+            sum += ownActivation * this.outputWeights[i] + oppActivation * this.outputWeights[this.hidden + i];
+        }
+        return (int) ((long) (sum + this.outputBias) * this.scale
+                / (NeuralNetwork.ACTIVATION_MAX * NeuralNetwork.OUTPUT_WEIGHT_SCALE));
+    }
+
+    public int getHidden() {
+        return this.hidden;
+    }
+}
\ No newline at end of file
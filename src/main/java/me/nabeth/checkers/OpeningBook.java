@@ -0,0 +1,115 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * The {@code OpeningBook} class looks up the moves played from the board states
+ * of the opening. The book is a file of fixed-width records of a Zobrist key, a
+ * packed move, and the weight of the move, sorted by key. The file is
+ * memory-mapped and searched by binary search, so looking up a board reads only
+ * a few of its pages.
+ */
+public class OpeningBook {
+    public static final int RECORD_BYTES = 16;
+
+    private ByteBuffer buffer;
+    private int records;
+    private Random random;
+
+    /**
+     * Opens an opening book.
+     *
+     * @param file the file of the book
+     * @throws IOException if the file cannot be mapped
+     */
+    public OpeningBook(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            this.buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+        }
+        this.records = (int) (file.length() / OpeningBook.RECORD_BYTES);
+        this.random = new Random();
+    }
+
+    private static long getKey(ByteBuffer buffer, int record) {
+        return buffer.getLong(record * OpeningBook.RECORD_BYTES);
+    }
+
+    private static int getMove(ByteBuffer buffer, int record) {
+        return buffer.getInt(record * OpeningBook.RECORD_BYTES + 8);
+    }
+
+    private static int getWeight(ByteBuffer buffer, int record) {
+        return buffer.getInt(record * OpeningBook.RECORD_BYTES + 12);
+    }
+
+    /**
+     * Picks one of the moves stored for a board at random, in proportion to
+     * their weights.
+     *
+     * @param board the board state to be looked up
+     * @return the packed move, or {@code 0} if the board is not in the book
+     */
+    public int probe(BitBoard board) {
+        long key = board.getKey();
+
+        // find the first record of the key
+        int low = 0;
+        int high = this.records;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (OpeningBook.getKey(this.buffer, middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int count = board.genMoves(moves);
+        int total = 0;
+        int move = 0;
+        for (int i = low; (i < this.records) && (OpeningBook.getKey(this.buffer, i) == key); i++) {
+            int candidate = OpeningBook.getMove(this.buffer, i);
+            int weight = OpeningBook.getWeight(this.buffer, i);
+            if ((weight <= 0) || !OpeningBook.contains(moves, count, candidate)) {
+                continue; // from another board with the same key
+            }
+            total += weight;
+            if (this.random.nextInt(total) < weight) {
+                move = candidate;
+            }
+        }
+        return move;
+    }
+
+    private static boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,176 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code OpeningBookBuilder} class builds an opening book from recorded
+ * games, without a user interface.
+ * <p>
+ * The games are read from a text file with one game per line, each move in the
+ * standard numeric notation where black's pieces start on squares 1 to 12,
+ * such as {@code 11-15} or {@code 22x15}. Move numbers are ignored, and a line
+ * may end with its result, {@code 1-0} for a black win, {@code 0-1} for a red
+ * win, or {@code 1/2-1/2}. The weight of a move is the number of games it was
+ * played in, a move played by the winner counting twice and a move played by
+ * the loser not at all.
+ */
+public class OpeningBookBuilder {
+    public static final int PLIES = 16;
+
+    private Map<Long, Map<Integer, Integer>> weights; // indexed by key, then by move
+    private int plies;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: OpeningBookBuilder <games> <book> [plies]");
+            System.exit(1);
+        }
+        int plies = (args.length > 2) ? Integer.parseInt(args[2]) : OpeningBookBuilder.PLIES;
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        int games = builder.addGames(new File(args[0]));
+        int records = builder.write(new File(args[1]));
+        System.out.println(games + " games, " + records + " moves written");
+    }
+
+    /**
+     * Creates a builder of a book covering a given number of plies of each game.
+     */
+    public OpeningBookBuilder(int plies) {
+        this.weights = new HashMap<>();
+        this.plies = plies;
+    }
+
+    /**
+     * Adds the openings of the games recorded in a file.
+     *
+     * @param file the file of the games
+     * @return the number of games added
+     * @throws IOException if the file cannot be read
+     */
+    public int addGames(File file) throws IOException {
+        int games = 0;
+        try (BufferedReader input = new BufferedReader(new FileReader(file))) {
+            String line;
+            for (int lineNumber = 1; (line = input.readLine()) != null; lineNumber++) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].isEmpty() || tokens[0].startsWith("#")) {
+                    continue;
+                }
+                try {
+                    this.addGame(tokens);
+                    games++;
+                } catch (IllegalArgumentException e) {
+                    System.err.println(file + ":" + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return games;
+    }
+
+    private void addGame(String[] tokens) {
+        // only the winner's moves are worth playing again
+        String result = tokens[tokens.length - 1];
+        int moveTokens = tokens.length - 1;
+        int[] sideWeights = { 1, 1 };
+        if (result.equals("1-0")) {
+            sideWeights = new int[] { 2, 0 };
+        } else if (result.equals("0-1")) {
+            sideWeights = new int[] { 0, 2 };
+        } else if (!result.equals("1/2-1/2") && !result.equals("*")) {
+            moveTokens++; // no result
+        }
+
+        // read the whole opening before adding any of it
+        BitBoard board = new BitBoard();
+        List<long[]> played = new ArrayList<>();
+        for (int i = 0; (i < moveTokens) && (played.size() < this.plies); i++) {
+            if (tokens[i].endsWith(".")) { // move number
+                continue;
+            }
+            int move = board.parseMove(tokens[i]);
+            if (move == 0) {
+                throw new IllegalArgumentException("Illegal move " + tokens[i]);
+            }
+            played.add(new long[] { board.getKey(), move, sideWeights[board.getSide()] });
+            board.perform(move);
+        }
+
+        for (long[] record : played) {
+            if (record[2] == 0) {
+                continue;
+            }
+            Map<Integer, Integer> moves = this.weights.get(record[0]);
+            if (moves == null) {
+                moves = new HashMap<>();
+                this.weights.put(record[0], moves);
+            }
+            Integer total = moves.get((int) record[1]);
+            moves.put((int) record[1], (int) record[2] + ((total == null) ? 0 : total));
+        }
+    }
+
+    /**
+     * Writes the moves added so far to a book, sorted by key.
+     *
+     * @param file the file of the book
+     * @return the number of moves written
+     * @throws IOException if the file cannot be written
+     */
+    public int write(File file) throws IOException {
+        List<long[]> records = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, Integer>> board : this.weights.entrySet()) {
+            for (Map.Entry<Integer, Integer> move : board.getValue().entrySet()) {
+                records.add(new long[] { board.getKey(), move.getKey(), move.getValue() });
+            }
+        }
+        Collections.sort(records, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return (a[0] != b[0]) ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]);
+            }
+        });
+
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * OpeningBook.RECORD_BYTES);
+        for (long[] record : records) {
+            buffer.putLong(record[0]);
+            buffer.putInt((int) record[1]);
+            buffer.putInt((int) record[2]);
+        }
+        buffer.flip();
+        try (FileChannel output = new FileOutputStream(file).getChannel()) {
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+        }
+        return records.size();
+    }
+}
\ No newline at end of file
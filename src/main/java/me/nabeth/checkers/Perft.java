@@ -0,0 +1,271 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code Perft} class counts the boards reached by every sequence of legal
+ * moves of a given length, which verifies the move generation against known
+ * counts and measures its speed, without a user interface.
+ * <p>
+ * The counts from the starting board match the published counts up to depth 8.
+ * From depth 9 they differ because a pawn crowned in the middle of a multiple
+ * capture keeps capturing as a king under the rules of this game, while the
+ * published counts end the move on promotion.
+ */
+public class Perft {
+    public static final int TABLE_MEGABYTES = 64;
+
+    // published counts from the starting board, indexed by depth
+    private static final long[] START_COUNTS = { 1, 7, 49, 302, 1469, 7361, 36768, 179740, 845931 };
+
+    // test boards in FEN with their counts by depth, counted by this program
+    private static final String[] TEST_BOARDS = { "W:W18,24,27,28,K10,K15:B12,16,20,K22,K25,K29",
+            "B:W5,6,7,13,14,15,22,23:B19,26,27,K30", "W:W9,10,11,14,17,21,23,K32:B1,2,3,6,12,16,20,K24" };
+    private static final long[][] TEST_COUNTS = {
+            { 1, 8, 27, 202, 911, 6707, 30195, 207681, 1073472, 7425834 },
+            { 1, 5, 18, 84, 1000, 4775, 49374, 227612, 2169482, 11499353 },
+            { 1, 9, 20, 130, 611, 3206, 16093, 82419, 461359, 2366940 } };
+
+    private long[] keys; // XORed with the counts
+    private long[] counts;
+    private int mask; // number of entries - 1
+    private ForkJoinPool pool;
+
+    public static void main(String[] args) {
+        int depth = 0;
+        boolean isDivide = false;
+        boolean isSuite = false;
+        int tableMegabytes = 0;
+        int threads = 1;
+        BitBoard board = new BitBoard();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-divide")) {
+                    isDivide = true;
+                } else if (args[i].equals("-suite")) {
+                    isSuite = true;
+                } else if (args[i].equals("-hash")) {
+                    tableMegabytes = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-fen")) {
+                    board = BitBoard.fromFen(args[++i]);
+                } else {
+                    depth = Integer.parseInt(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            depth = 0;
+        }
+        if (depth <= 0) {
+            System.err.println("Usage: Perft [-divide] [-suite] [-hash <megabytes>] [-threads <threads>] "
+                    + "[-fen <board>] <depth>");
+            System.exit(1);
+        }
+
+        Perft perft = new Perft(tableMegabytes, threads);
+        try {
+            if (isSuite) {
+                System.exit(perft.runSuite(depth) ? 0 : 1);
+            } else if (isDivide) {
+                perft.divide(board, depth);
+            } else {
+                for (int d = 1; d <= depth; d++) {
+                    perft.report(board, d);
+                }
+            }
+        } finally {
+            perft.shutdown();
+        }
+    }
+
+    /**
+     * Creates a counter of boards.
+     *
+     * @param tableMegabytes the memory budget of the table of counts already
+     *                       made, or {@code 0} to count every board
+     * @param threads        the number of threads splitting the moves of the
+     *                       first board between them
+     */
+    public Perft(int tableMegabytes, int threads) {
+        if (tableMegabytes > 0) {
+            int entries = Integer.highestOneBit((int) Math.min(((long) tableMegabytes << 20) / 16, 1 << 29));
+            this.keys = new long[entries];
+            this.counts = new long[entries];
+            this.mask = entries - 1;
+        }
+        if (threads > 1) {
+            this.pool = new ForkJoinPool(threads);
+        }
+    }
+
+    /**
+     * Returns the number of boards reached from a board by every sequence of
+     * legal moves of a given length.
+     */
+    public long count(BitBoard board, int depth) {
+        if ((this.pool == null) || (depth < 2)) {
+            return this.count(new BitBoard(board), depth, new int[depth + 1][BitBoard.MAX_MOVES], 0);
+        }
+        long total = 0;
+        for (Split split : this.split(board, depth)) {
+            total += split.join();
+        }
+        return total;
+    }
+
+    /**
+     * Prints the number of boards reached after each move of a board.
+     */
+    public void divide(BitBoard board, int depth) {
+        long startTime = System.nanoTime();
+        long total = 0;
+        for (Split split : this.split(board, depth)) {
+            long count = split.join();
+            System.out.println(BitBoard.toNotation(split.move) + ": " + count);
+            total += count;
+        }
+        System.out.println("total: " + total + " (" + Perft.formatSpeed(total, System.nanoTime() - startTime) + ")");
+    }
+
+    /**
+     * Starts counting the boards reached after each move of a board, on the pool
+     * if there is one.
+     */
+    private List<Split> split(BitBoard board, int depth) {
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int count = board.genMoves(moves);
+        List<Split> splits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Split split = new Split(board, moves[i], depth - 1);
+            if (this.pool != null) {
+                this.pool.execute(split);
+            } else {
+                split.invoke();
+            }
+            splits.add(split);
+        }
+        return splits;
+    }
+
+    private long count(BitBoard board, int depth, int[][] moves, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        int count = board.genMoves(moves[ply]);
+        if (depth == 1) {
+            return count;
+        }
+
+        long tag = board.getKey() ^ (depth * 0x9E3779B97F4A7C15L);
+        int index = (int) tag & this.mask;
+        if (this.keys != null) {
+            long stored = this.counts[index];
+            if ((this.keys[index] ^ stored) == tag) {
+                return stored;
+            }
+        }
+
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[ply][i];
+            int record = board.perform(move);
+            total += this.count(board, depth - 1, moves, ply + 1);
+            board.undo(move, record);
+        }
+
+        if (this.keys != null) {
+            this.keys[index] = tag ^ total;
+            this.counts[index] = total;
+        }
+        return total;
+    }
+
+    private void report(BitBoard board, int depth) {
+        long startTime = System.nanoTime();
+        long count = this.count(board, depth);
+        System.out.println("depth " + depth + ": " + count + " ("
+                + Perft.formatSpeed(count, System.nanoTime() - startTime) + ")");
+    }
+
+    private static String formatSpeed(long count, long nanos) {
+        long millis = nanos / 1000000;
+        return millis + " ms, " + (count * 1000000000L / Math.max(nanos, 1)) + " boards/s";
+    }
+
+    /**
+     * Checks the counts of the starting board and of the test boards up to a
+     * given depth.
+     *
+     * @return whether every count matches
+     */
+    public boolean runSuite(int maxDepth) {
+        boolean isPassed = this.check("start", new BitBoard(), Perft.START_COUNTS, maxDepth);
+        for (int i = 0; i < Perft.TEST_BOARDS.length; i++) {
+            isPassed &= this.check(Perft.TEST_BOARDS[i], BitBoard.fromFen(Perft.TEST_BOARDS[i]), Perft.TEST_COUNTS[i],
+                    maxDepth);
+        }
+        System.out.println(isPassed ? "all counts match" : "some counts do not match");
+        return isPassed;
+    }
+
+    private boolean check(String name, BitBoard board, long[] expected, int maxDepth) {
+        boolean isPassed = true;
+        for (int depth = 1; depth < Math.min(expected.length, maxDepth + 1); depth++) {
+            long startTime = System.nanoTime();
+            long count = this.count(board, depth);
+            boolean isMatch = count == expected[depth];
+            System.out.println(name + " depth " + depth + ": " + count + (isMatch ? " ok" : " expected " + expected[depth])
+                    + " (" + Perft.formatSpeed(count, System.nanoTime() - startTime) + ")");
+            isPassed &= isMatch;
+        }
+        return isPassed;
+    }
+
+    public void shutdown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    // inner class
+    private class Split extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final BitBoard board;
+        private final int move;
+        private final int depth;
+
+        public Split(BitBoard board, int move, int depth) {
+            this.board = new BitBoard(board);
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            this.board.perform(this.move);
+            return Perft.this.count(this.board, this.depth, new int[this.depth + 1][BitBoard.MAX_MOVES], 0);
+        }
+    }
+}
\ No newline at end of file
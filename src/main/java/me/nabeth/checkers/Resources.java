@@ -24,6 +24,12 @@ package me.nabeth.checkers;
  */
 public final class Resources {
     public static final String PATH = "src/main/resources";
+    // Book
+    public static final String OPENING_BOOK = "/Book/OPENING_BOOK.bin";
+    // Endgame
+    public static final String ENDGAME_DATABASES = "/Endgame";
+    // Network
+    public static final String NEURAL_NETWORK = "/Network/NEURAL_NETWORK.bin";
     // Piece
     public static final String PLAYER1_PAWN = "/Piece/BLACK_PAWN.png";
     public static final String PLAYER1_KING = "/Piece/BLACK_KING.png";
@@ -36,6 +42,7 @@ public final class Resources {
     public static final String PLAYER_PROFILE = "/Profile/PLAYER_PROFILE.txt";
     // Settings
     public static final String PLAYER_SETTINGS = "/Settings/PLAYER_SETTINGS.txt";
+    public static final String EVALUATION_WEIGHTS = "/Settings/EVALUATION_WEIGHTS.txt";
     // Sounds
     public static final String GAME_START = "/Sounds/GAME_START.wav";
     public static final String ORDINARY_MOVE = "/Sounds/ORDINARY_MOVE.wav";
@@ -0,0 +1,649 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.util.Arrays;
+
+/**
+ * The {@code Search} class encapsulates the state of a single thread searching
+ * a board for the {@code AI}, sharing its transposition table with any other
+ * threads searching the same board.
+ */
+public class Search {
+    public static final int INFINITY = 32000;
+    public static final int WIN = 30000;
+    public static final int KNOWN_WIN = Search.WIN / 2; // won according to the endgame databases
+    public static final int MAX_PLY = 128;
+    private static final int NODES_PER_CLOCK_CHECK = 1024;
+    private static final int ASPIRATION_WINDOW = 25; // half the width of the initial root window
+
+    // move ordering priorities
+    private static final int TABLE_MOVE_SCORE = 1 << 30, CAPTURE_SCORE = 1 << 29, KILLER_SCORE = 1 << 28;
+
+    private BitBoard board;
+    private TranspositionTable table;
+    private SearchParameters parameters;
+    private Evaluator evaluator;
+    private EndgameDatabase database;
+    private int rootResult; // of the prepared board in the endgame databases
+    private int[][] moves; // reusable move list per ply
+    private int[][] scores; // ordering score of each move in the move lists
+    private int[][] killers; // two quiet moves per ply that last caused a cutoff
+    private int[][] history; // indexed by source and destination square
+    private int[][] pv; // best line found from each ply, triangular
+    private int[] pvLength;
+    private int[] principalVariation; // of the deepest completed search
+    private int score; // of the deepest completed search
+    private long nodes, quiescenceNodes, endgameHits;
+    private long nextCheck; // number of boards at which the clock and node limit are checked
+    private long cutoffs, firstMoveCutoffs;
+    private volatile long softDeadline; // after which no deeper search is started
+    private volatile long deadline;
+    private volatile long nodeLimit; // after which the search stops
+    private volatile boolean isStopped;
+    private SearchListener listener;
+
+    public Search(TranspositionTable table, SearchParameters parameters) {
+        this.table = table;
+        this.parameters = parameters;
+        this.evaluator = Evaluator.DEFAULT;
+        this.moves = new int[Search.MAX_PLY][BitBoard.MAX_MOVES];
+        this.scores = new int[Search.MAX_PLY][BitBoard.MAX_MOVES];
+        this.killers = new int[Search.MAX_PLY][2];
+        this.history = new int[BitBoard.SQUARES][BitBoard.SQUARES];
+        this.pv = new int[Search.MAX_PLY][Search.MAX_PLY];
+        this.pvLength = new int[Search.MAX_PLY];
+        this.principalVariation = new int[0];
+        this.nodeLimit = Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the evaluation of the board from the perspective of the player to
+     * move based on its children.
+     *
+     * @param ply   the number of moves performed since the root of the search
+     * @param depth the remaining number of levels in the search tree
+     * @param alpha the evaluation of the board resulted from the best move by the
+     *              player to move
+     * @param beta  the evaluation of the board resulted from the best move by the
+     *              opponent
+     * @return a more positive {@code int} if the evaluation of the board is
+     *         favorable towards the player to move, otherwise a more negative
+     *         {@code int}
+     */
+    private int minimax(int ply, int depth, int alpha, int beta) {
+        this.pvLength[ply] = 0;
+        this.nodes++;
+        if (this.nodes >= this.nextCheck) { // also counting the boards resolved by quiesce
+            this.nextCheck = Math.min(this.nodes + Search.NODES_PER_CLOCK_CHECK, this.nodeLimit);
+            if ((System.currentTimeMillis() >= this.deadline) || (this.nodes >= this.nodeLimit)) {
+                this.isStopped = true;
+            }
+        }
+        if (this.isStopped) {
+            return 0; // discarded by the caller
+        }
+
+        // look up previous searches of this board, only cutting off with null
+        // windows so that the principal variation is searched and kept whole
+        int ttMove = 0;
+        long entry = this.table.probe(this.board.getKey());
+        if (entry != 0) {
+            ttMove = TranspositionTable.getMove(entry);
+            if ((beta - alpha == 1) && (TranspositionTable.getDepth(entry) >= depth)) {
+                int eval = Search.fromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if ((bound == TranspositionTable.EXACT) || ((bound == TranspositionTable.LOWER) && (eval >= beta))
+                        || ((bound == TranspositionTable.UPPER) && (eval <= alpha))) {
+                    return eval;
+                }
+            }
+        }
+
+        int[] moves = this.moves[ply];
+        int count = this.board.genMoves(moves);
+        if (count == 0) {
+            return -Search.WIN + ply; // prefer the longest loss
+        }
+
+        // look up the result of endgames instead of searching them
+        if ((this.database != null) && (ply > 0)) {
+            int result = this.database.probe(this.board);
+            if ((result != EndgameDatabase.UNKNOWN) && !this.isProgressing(result, ply)) {
+                this.endgameHits++;
+                if (result == EndgameDatabase.DRAW) {
+                    return 0;
+                }
+                // prefer the wins that keep the most material
+                int eval = this.board.evaluate();
+                return (result == EndgameDatabase.WIN) ? Search.KNOWN_WIN + eval : -Search.KNOWN_WIN + eval;
+            }
+        }
+
+        if ((depth == 0) || (ply == Search.MAX_PLY - 1)) {
+            return this.quiesce(ply, count, alpha, beta);
+        }
+        this.orderMoves(ply, count, ttMove);
+
+        // a quiet board that is too far below alpha is not expected to catch up
+        boolean isQuiet = !BitBoard.isCapture(moves[0]);
+        int futilityEval = -Search.INFINITY;
+        if (isQuiet && (beta - alpha == 1) && (depth <= this.parameters.getFutilityMaxDepth())
+                && (Math.abs(alpha) < Search.WIN - Search.MAX_PLY)) {
+            int eval = this.board.evaluate() + depth * this.parameters.getFutilityMargin();
+            if (eval <= alpha) {
+                futilityEval = eval;
+            }
+        }
+
+        int maxEval = -Search.INFINITY;
+        int bestMove = 0;
+        int origAlpha = alpha;
+        for (int i = 0; i < count; i++) {
+            this.pickMove(ply, count, i);
+            int reduction = 0;
+            if (isQuiet && (i > 0) && !this.board.isPromotion(moves[i])) {
+                if (futilityEval != -Search.INFINITY) { // prune the move
+                    maxEval = Math.max(maxEval, futilityEval);
+                    continue;
+                }
+                if ((depth >= this.parameters.getLateMoveMinDepth())
+                        && (i >= this.parameters.getLateMoveMinIndex())) {
+                    reduction = Math.min(this.parameters.getLateMoveReduction(), depth - 1);
+                }
+            }
+            int eval = this.evaluateScout(moves[i], ply, depth, reduction, alpha, beta, i == 0);
+            if (this.isStopped) {
+                return 0;
+            }
+            if (eval > maxEval) {
+                maxEval = eval;
+                bestMove = moves[i];
+            }
+            if (eval > alpha) {
+                alpha = eval;
+                this.updatePv(ply, moves[i]);
+            }
+            if (alpha >= beta) { // prune the search
+                this.recordCutoff(ply, depth, moves[i], i);
+                break;
+            }
+        }
+
+        int bound = TranspositionTable.EXACT;
+        if (maxEval <= origAlpha) {
+            bound = TranspositionTable.UPPER;
+            bestMove = 0; // every move failed low
+        } else if (maxEval >= beta) {
+            bound = TranspositionTable.LOWER;
+        }
+        this.table.store(this.board.getKey(), bestMove, Search.toTable(maxEval, ply), depth, bound);
+        return maxEval;
+    }
+
+    /**
+     * Returns the evaluation of a board at the horizon of the search once the
+     * captures available on it are resolved. Since captures are mandatory, every
+     * capture is searched until a board without any is reached.
+     *
+     * @param ply   the number of moves performed since the root of the search
+     * @param count the number of legal moves already generated for the ply
+     * @param alpha the lower bound of the evaluation
+     * @param beta  the upper bound of the evaluation
+     * @return the evaluation from the perspective of the player to move
+     */
+    private int quiesce(int ply, int count, int alpha, int beta) {
+        int[] moves = this.moves[ply];
+        if (!BitBoard.isCapture(moves[0]) || (ply == Search.MAX_PLY - 1)) {
+            return this.board.evaluate();
+        }
+        this.orderMoves(ply, count, 0);
+
+        int maxEval = -Search.INFINITY;
+        for (int i = 0; i < count; i++) {
+            this.pickMove(ply, count, i);
+            int record = this.board.perform(moves[i]);
+            this.nodes++;
+            this.quiescenceNodes++;
+            int childCount = this.board.genMoves(this.moves[ply + 1]);
+            int eval = (childCount == 0) ? Search.WIN - (ply + 1)
+                    : -this.quiesce(ply + 1, childCount, -beta, -alpha);
+            this.board.undo(moves[i], record);
+            maxEval = Math.max(maxEval, eval);
+            alpha = Math.max(alpha, eval);
+            if (alpha >= beta) { // prune the search
+                break;
+            }
+        }
+        return maxEval;
+    }
+
+    /**
+     * Returns the evaluation of a move from the perspective of the player to move.
+     * The move is taken back before returning.
+     */
+    private int evaluate(int move, int ply, int depth, int alpha, int beta) {
+        int record = this.board.perform(move);
+        int eval = -this.minimax(ply, depth, -beta, -alpha);
+        this.board.undo(move, record);
+        return eval;
+    }
+
+    /**
+     * Returns whether a board keeps the win or loss of a prepared board that is
+     * already in the endgame databases, in which case it is still searched to
+     * find how to bring that result about.
+     *
+     * @param result the result of the board for the player to move
+     * @param ply    the number of moves performed since the root of the search
+     */
+    private boolean isProgressing(int result, int ply) {
+        if (result == EndgameDatabase.DRAW) {
+            return false;
+        }
+        // a win for one side is a loss for the other
+        return ((ply % 2 == 0) ? result : result ^ 3) == this.rootResult;
+    }
+
+    /**
+     * Returns the evaluation of a move searched as part of a principal variation
+     * search. Only the first move of a board is searched with the full window;
+     * every later move is expected to be worse and is first searched with a null
+     * window, possibly to a reduced depth, then searched again to the full depth
+     * and with the full window if it turns out better.
+     */
+    private int evaluateScout(int move, int ply, int depth, int reduction, int alpha, int beta, boolean isFirst) {
+        if (isFirst) {
+            return this.evaluate(move, ply + 1, depth - 1, alpha, beta);
+        }
+        int eval = this.evaluate(move, ply + 1, depth - 1 - reduction, alpha, alpha + 1);
+        if ((reduction > 0) && (eval > alpha) && !this.isStopped) {
+            eval = this.evaluate(move, ply + 1, depth - 1, alpha, alpha + 1);
+        }
+        if ((eval > alpha) && (eval < beta) && !this.isStopped) {
+            eval = this.evaluate(move, ply + 1, depth - 1, alpha, beta);
+        }
+        return eval;
+    }
+
+    /**
+     * Records a move followed by the best line found from the next ply as the
+     * best line found from a ply.
+     */
+    private void updatePv(int ply, int move) {
+        int[] line = this.pv[ply];
+        line[0] = move;
+        int length = this.pvLength[ply + 1];
+        System.arraycopy(this.pv[ply + 1], 0, line, 1, length);
+        this.pvLength[ply] = length + 1;
+    }
+
+    /**
+     * Converts a winning or losing evaluation relative to the root of the search
+     * to one relative to the board being stored, and vice versa.
+     */
+    private static int toTable(int eval, int ply) {
+        if (eval > Search.WIN - Search.MAX_PLY) {
+            return eval + ply;
+        } else if (eval < -Search.WIN + Search.MAX_PLY) {
+            return eval - ply;
+        }
+        return eval;
+    }
+
+    private static int fromTable(int eval, int ply) {
+        if (eval > Search.WIN - Search.MAX_PLY) {
+            return eval - ply;
+        } else if (eval < -Search.WIN + Search.MAX_PLY) {
+            return eval + ply;
+        }
+        return eval;
+    }
+
+    /**
+     * Scores the moves of a ply in the order they should be searched: the best
+     * move stored in the transposition table, then captures with the most jumps
+     * first, then the killer moves of the ply, then by the history of cutoffs.
+     */
+    private void orderMoves(int ply, int count, int ttMove) {
+        Search.orderMoves(this.moves[ply], this.scores[ply], count, ttMove, this.killers[ply], this.history);
+    }
+
+    /**
+     * Scores a list of moves in the order they should be searched.
+     *
+     * @param moves   the packed moves
+     * @param scores  the array the ordering score of each move is written to
+     * @param count   the number of moves
+     * @param ttMove  the best move stored in the transposition table, or
+     *                {@code 0}
+     * @param killers the two quiet moves that last caused a cutoff at the same
+     *                ply
+     * @param history the cutoff history, indexed by source and destination
+     *                square
+     */
+    static void orderMoves(int[] moves, int[] scores, int count, int ttMove, int[] killers, int[][] history) {
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (move == ttMove) {
+                scores[i] = Search.TABLE_MOVE_SCORE;
+            } else if (BitBoard.isCapture(move)) {
+                scores[i] = Search.CAPTURE_SCORE + BitBoard.getJumps(move);
+            } else if (move == killers[0]) {
+                scores[i] = Search.KILLER_SCORE + 1;
+            } else if (move == killers[1]) {
+                scores[i] = Search.KILLER_SCORE;
+            } else {
+                scores[i] = history[BitBoard.getSrc(move)][BitBoard.getDest(move)];
+            }
+        }
+    }
+
+    /**
+     * Swaps the highest scored move that has not been searched yet into the
+     * given index of the move list of a ply.
+     */
+    private void pickMove(int ply, int count, int index) {
+        Search.pickMove(this.moves[ply], this.scores[ply], count, index);
+    }
+
+    static void pickMove(int[] moves, int[] scores, int count, int index) {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[index];
+        moves[index] = move;
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+    }
+
+    /**
+     * Updates the cutoff counters, and the killer moves and history of a quiet
+     * move that caused a cutoff.
+     */
+    private void recordCutoff(int ply, int depth, int move, int index) {
+        this.cutoffs++;
+        if (index == 0) {
+            this.firstMoveCutoffs++;
+        }
+        Search.recordCutoff(this.killers[ply], this.history, depth, move);
+    }
+
+    /**
+     * Makes a quiet move that caused a cutoff the first killer move of its ply
+     * and raises its history.
+     */
+    static void recordCutoff(int[] killers, int[][] history, int depth, int move) {
+        if (BitBoard.isCapture(move)) {
+            return;
+        }
+        if (killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+        int[] fromHistory = history[BitBoard.getSrc(move)];
+        fromHistory[BitBoard.getDest(move)] = Math.min(fromHistory[BitBoard.getDest(move)] + depth * depth,
+                Search.KILLER_SCORE - 1);
+    }
+
+    /**
+     * Returns the evaluation of the root found by searching to a given depth
+     * within a window, moving the best root move to the front of the move list,
+     * or {@code 0} if the search was stopped.
+     */
+    private int searchRoot(int[] moves, int count, int depth, int alpha, int beta) {
+        this.pvLength[0] = 0;
+        long entry = this.table.probe(this.board.getKey());
+        this.orderMoves(0, count, TranspositionTable.getMove(entry));
+
+        int maxEval = -Search.INFINITY;
+        int best = 0;
+        int origAlpha = alpha;
+        for (int i = 0; i < count; i++) {
+            this.pickMove(0, count, i);
+            int eval = this.evaluateScout(moves[i], 0, depth + 1, 0, alpha, beta, i == 0);
+            if (this.isStopped) {
+                return 0;
+            }
+            if (eval > maxEval) {
+                maxEval = eval;
+                best = i;
+            }
+            if (eval > alpha) {
+                alpha = eval;
+                this.updatePv(0, moves[i]);
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[0];
+        moves[0] = move;
+
+        int bound = TranspositionTable.EXACT;
+        if (maxEval <= origAlpha) {
+            bound = TranspositionTable.UPPER;
+            move = 0;
+        } else if (maxEval >= beta) {
+            bound = TranspositionTable.LOWER;
+        }
+        this.table.store(this.board.getKey(), move, maxEval, depth + 1, bound);
+        return maxEval;
+    }
+
+    /**
+     * Sets up this thread to search a board until a deadline.
+     *
+     * @param root         the board to be searched, which is left unchanged
+     * @param softDeadline the system time after which no deeper search is
+     *                     started, in milliseconds
+     * @param deadline     the system time at which searching stops, in
+     *                     milliseconds
+     */
+    public void prepare(BitBoard root, long softDeadline, long deadline) {
+        this.board = new BitBoard(root, this.evaluator);
+        this.softDeadline = softDeadline;
+        this.deadline = deadline;
+        this.isStopped = false;
+        this.nodes = 0;
+        this.nextCheck = Math.min(Search.NODES_PER_CLOCK_CHECK, this.nodeLimit);
+        this.quiescenceNodes = 0;
+        this.endgameHits = 0;
+        this.rootResult = (this.database == null) ? EndgameDatabase.UNKNOWN : this.database.probe(this.board);
+        this.cutoffs = 0;
+        this.firstMoveCutoffs = 0;
+        this.principalVariation = new int[0];
+        this.score = 0;
+
+        // keep a fading memory of the previous searches
+        for (int[] fromHistory : this.history) {
+            for (int dest = 0; dest < fromHistory.length; dest++) {
+                fromHistory[dest] /= 2;
+            }
+        }
+    }
+
+    /**
+     * Changes the deadlines of a search that may already be running, such as
+     * one started without any while pondering.
+     */
+    public void setDeadlines(long softDeadline, long deadline) {
+        this.softDeadline = softDeadline;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Searches the prepared board one level deeper at a time until the maximum
+     * depth or one of the deadlines is reached, or until the search is stopped.
+     *
+     * @param startDepth the depth of the first search
+     * @param maxDepth   the depth of the last search
+     * @return the packed best move from the deepest completed search, or
+     *         {@code 0} if no search completed
+     */
+    public int iterate(int startDepth, int maxDepth) {
+        int[] moves = this.moves[0];
+        int count = this.board.genMoves(moves);
+        int move = 0;
+        for (int depth = startDepth; depth <= maxDepth; depth++) {
+            // expect a score close to that of the previous search
+            int window = Search.ASPIRATION_WINDOW;
+            int alpha = -Search.INFINITY;
+            int beta = Search.INFINITY;
+            if (move != 0) {
+                alpha = Math.max(this.score - window, -Search.INFINITY);
+                beta = Math.min(this.score + window, Search.INFINITY);
+            }
+
+            int eval;
+            while (true) {
+                eval = this.searchRoot(moves, count, depth, alpha, beta);
+                if (this.isStopped) {
+                    break;
+                }
+                // widen the window on the failing side and search again
+                window *= 2;
+                if ((eval <= alpha) && (alpha > -Search.INFINITY)) {
+                    alpha = Math.max(eval - window, -Search.INFINITY);
+                } else if ((eval >= beta) && (beta < Search.INFINITY)) {
+                    beta = Math.min(eval + window, Search.INFINITY);
+                } else {
+                    break;
+                }
+            }
+            if (this.isStopped) {
+                break;
+            }
+            move = moves[0];
+            this.score = eval;
+            this.principalVariation = Arrays.copyOf(this.pv[0], this.pvLength[0]);
+            if (this.listener != null) {
+                this.listener.iterationCompleted(depth, eval, this.getPrincipalVariation());
+            }
+            // the next search would not finish within the budget
+            if (System.currentTimeMillis() >= this.softDeadline) {
+                break;
+            }
+        }
+        return move;
+    }
+
+    /**
+     * Limits the number of boards searched by the following searches, the limit
+     * being checked along with the clock.
+     *
+     * @param nodeLimit the number of boards, or {@code Long.MAX_VALUE} for no
+     *                  limit
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Makes this thread report each completed iteration of its searches.
+     *
+     * @param listener the listener, or {@code null} to report nothing
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Stops the search of this thread as soon as possible.
+     */
+    public void stop() {
+        this.isStopped = true;
+    }
+
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Returns the number of boards looked up in the endgame databases since it
+     * was prepared.
+     */
+    public long getEndgameHits() {
+        return this.endgameHits;
+    }
+
+    /**
+     * Makes this thread look up boards with few pieces in endgame databases.
+     *
+     * @param database the endgame databases, or {@code null} to search every
+     *                 board
+     */
+    public void setEndgameDatabase(EndgameDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Makes this thread evaluate the boards it prepares with an evaluator.
+     *
+     * @param evaluator the evaluator
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Returns the evaluation of the prepared board from the perspective of the
+     * player to move found by the deepest completed search.
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Returns the packed moves expected to be played from the prepared board, as
+     * found by the deepest completed search.
+     */
+    public int[] getPrincipalVariation() {
+        return this.principalVariation.clone();
+    }
+
+    /**
+     * Returns the number of boards searched since it was prepared while
+     * resolving captures at the horizon.
+     */
+    public long getQuiescenceNodes() {
+        return this.quiescenceNodes;
+    }
+
+    /**
+     * Returns the number of boards whose search was pruned since it was
+     * prepared.
+     */
+    public long getCutoffs() {
+        return this.cutoffs;
+    }
+
+    /**
+     * Returns the number of boards whose search was pruned by the first move
+     * searched since it was prepared.
+     */
+    public long getFirstMoveCutoffs() {
+        return this.firstMoveCutoffs;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+/**
+ * The {@code SearchListener} interface indicates that an object follows the
+ * progress of a search, such as to report it to a user.
+ */
+public interface SearchListener {
+    /**
+     * Called by the searching thread each time a search one level deeper than
+     * the last has completed.
+     *
+     * @param depth              the depth of the completed search
+     * @param score              the evaluation of the searched board from the
+     *                           perspective of the player to move
+     * @param principalVariation the packed moves expected to be played
+     */
+    public void iterationCompleted(int depth, int score, int[] principalVariation);
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.Scanner;
+
+/**
+ * The {@code SearchParameters} class encapsulates the thresholds of the
+ * selective search of the {@code AI}, including when late quiet moves are
+ * searched to a reduced depth and when quiet moves near the horizon are pruned
+ * without being searched.
+ */
+public class SearchParameters implements WritableToTxt {
+    private int lateMoveMinDepth;
+    private int lateMoveMinIndex;
+    private int lateMoveReduction;
+    private int futilityMaxDepth;
+    private int futilityMargin;
+
+    public SearchParameters() {
+        this.lateMoveMinDepth = 3;
+        this.lateMoveMinIndex = 3;
+        this.lateMoveReduction = 1;
+        this.futilityMaxDepth = 2;
+        this.futilityMargin = 100;
+    }
+
+    public SearchParameters(String fileName) throws FileNotFoundException {
+        Scanner input = new Scanner(new File(fileName));
+        this.lateMoveMinDepth = input.nextInt();
+        this.lateMoveMinIndex = input.nextInt();
+        this.lateMoveReduction = input.nextInt();
+        this.futilityMaxDepth = input.nextInt();
+        this.futilityMargin = input.nextInt();
+        input.close();
+    }
+
+    /**
+     * Returns the remaining depth from which late quiet moves are reduced.
+     */
+    public int getLateMoveMinDepth() {
+        return this.lateMoveMinDepth;
+    }
+
+    /**
+     * Returns the number of moves of a board searched to the full depth before
+     * the remaining quiet moves are reduced.
+     */
+    public int getLateMoveMinIndex() {
+        return this.lateMoveMinIndex;
+    }
+
+    public int getLateMoveReduction() {
+        return this.lateMoveReduction;
+    }
+
+    /**
+     * Returns the remaining depth up to which quiet moves may be pruned, or
+     * {@code 0} if none are.
+     */
+    public int getFutilityMaxDepth() {
+        return this.futilityMaxDepth;
+    }
+
+    /**
+     * Returns how much a quiet move is assumed to gain at most per level of
+     * remaining depth, in units of the heuristic evaluation.
+     */
+    public int getFutilityMargin() {
+        return this.futilityMargin;
+    }
+
+    public void setLateMoveMinDepth(int lateMoveMinDepth) {
+        this.lateMoveMinDepth = lateMoveMinDepth;
+    }
+
+    public void setLateMoveMinIndex(int lateMoveMinIndex) {
+        this.lateMoveMinIndex = lateMoveMinIndex;
+    }
+
+    public void setLateMoveReduction(int lateMoveReduction) {
+        this.lateMoveReduction = lateMoveReduction;
+    }
+
+    public void setFutilityMaxDepth(int futilityMaxDepth) {
+        this.futilityMaxDepth = futilityMaxDepth;
+    }
+
+    public void setFutilityMargin(int futilityMargin) {
+        this.futilityMargin = futilityMargin;
+    }
+
+    @Override
+    public void writeToTxt(String fileName) throws FileNotFoundException {
+        PrintWriter output = new PrintWriter(new FileOutputStream(new File(fileName), false));
+        output.println(this.lateMoveMinDepth);
+        output.println(this.lateMoveMinIndex);
+        output.println(this.lateMoveReduction);
+        output.println(this.futilityMaxDepth);
+        output.println(this.futilityMargin);
+        output.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,297 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * The {@code SelfPlay} class generates training data for the evaluation by
+ * having the {@code AI} play itself with shallow searches on every core,
+ * without a user interface. Each game starts with a few random moves, after
+ * which every board on which the AI had to choose between several moves is
+ * recorded along with the score of its search and the result of the game.
+ * <p>
+ * The records are appended to a binary file of fixed-width records of
+ * {@value #RECORD_BYTES} bytes: the masks of the pieces of side 0 and side 1
+ * and of the kings as {@code int}s, the score for side 0 as a {@code short},
+ * the side to move, and the result of the game in half points for side 0, all
+ * big-endian. The file starts with a header of the same width holding
+ * {@link #MAGIC}. Each thread buffers whole games and writes them through the
+ * file channel when its buffer fills up or has waited long enough, and the
+ * file is forced to disk periodically. A run that was interrupted resumes by
+ * dropping any incomplete record at the end of the file and appending to it.
+ */
+public class SelfPlay {
+    public static final int MAGIC = 0x434B5350; // "CKSP"
+    public static final int RECORD_BYTES = 16;
+    public static final int DEPTH = 6;
+    public static final int RANDOM_PLIES = 8;
+    public static final int MAX_PLIES = 300;
+    public static final int TABLE_MEGABYTES = 16;
+    private static final int BUFFER_RECORDS = 1 << 16; // per thread
+    private static final long FLUSH_MILLIS = 10000;
+
+    // results in half points of side 0
+    public static final int LOSS = 0, DRAW = 1, WIN = 2;
+
+    private FileChannel channel;
+    private int depth;
+    private int randomPlies;
+    private long positions; // to be reached
+    private volatile long records; // in the file
+    private long lastForce;
+    private volatile boolean isStopped;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = SelfPlay.DEPTH;
+        int randomPlies = SelfPlay.RANDOM_PLIES;
+        long positions = 1000000;
+        String fileName = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-depth")) {
+                    depth = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-random")) {
+                    randomPlies = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-positions")) {
+                    positions = Long.parseLong(args[++i]);
+                } else {
+                    fileName = args[i];
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            fileName = null;
+        }
+        if (fileName == null) {
+            System.err.println("Usage: SelfPlay [-threads <threads>] [-depth <depth>] [-random <plies>] "
+                    + "[-positions <positions>] <file>");
+            System.exit(1);
+        }
+
+        try {
+            SelfPlay selfPlay = new SelfPlay(new File(fileName), depth, randomPlies, positions);
+            try {
+                selfPlay.run(threads);
+            } finally {
+                selfPlay.close();
+            }
+        } catch (IOException | InterruptedException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Opens a file of records to append to, creating it if needed.
+     *
+     * @param file        the file of records
+     * @param depth       the depth of each search
+     * @param randomPlies the number of random moves each game starts with
+     * @param positions   the number of records the file should hold at the end
+     * @throws IOException if the file cannot be opened or is not a file of
+     *                     records
+     */
+    public SelfPlay(File file, int depth, int randomPlies, long positions) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SelfPlay.RECORD_BYTES);
+        if (this.channel.size() < SelfPlay.RECORD_BYTES) {
+            header.putInt(SelfPlay.MAGIC).rewind();
+            this.channel.truncate(0);
+            this.channel.write(header, 0);
+        } else {
+            this.channel.read(header, 0);
+            if (header.getInt(0) != SelfPlay.MAGIC) {
+                this.channel.close();
+                throw new IOException("Not a file of self-play records: " + file);
+            }
+        }
+        // drop the incomplete record of an interrupted run
+        this.records = this.channel.size() / SelfPlay.RECORD_BYTES - 1;
+        this.channel.truncate((this.records + 1) * SelfPlay.RECORD_BYTES);
+        this.channel.position(this.channel.size());
+        this.depth = depth;
+        this.randomPlies = randomPlies;
+        this.positions = positions;
+        this.lastForce = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns whether a file starts with the header of a file of records.
+     */
+    public static boolean isRecordFile(File file) throws IOException {
+        try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            return (input.read(header, 0) == 4) && (header.getInt(0) == SelfPlay.MAGIC);
+        }
+    }
+
+    /**
+     * Plays games on several threads until the file holds enough records.
+     */
+    public void run(int threads) throws InterruptedException {
+        Thread[] players = new Thread[Math.max(threads, 1)];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        SelfPlay.this.playGames();
+                    } catch (IOException e) {
+                        System.err.println(e.getMessage());
+                        SelfPlay.this.isStopped = true;
+                    }
+                }
+            };
+            players[i].start();
+        }
+        for (Thread player : players) {
+            player.join();
+        }
+    }
+
+    public void close() throws IOException {
+        this.channel.force(false);
+        this.channel.close();
+    }
+
+    /**
+     * Plays games on this thread, writing them from a buffer of whole games.
+     */
+    private void playGames() throws IOException {
+        AI ai = new AI(this.depth, SelfPlay.TABLE_MEGABYTES, 1);
+        ai.useOpeningBook(null);
+        Random random = new Random();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SelfPlay.BUFFER_RECORDS * SelfPlay.RECORD_BYTES);
+        ByteBuffer game = ByteBuffer.allocate(SelfPlay.MAX_PLIES * SelfPlay.RECORD_BYTES);
+        long lastWrite = System.currentTimeMillis();
+        while (!this.isStopped) {
+            game.clear();
+            this.play(ai, random, game);
+            game.flip();
+            if (buffer.remaining() < game.remaining()) {
+                this.write(buffer);
+                lastWrite = System.currentTimeMillis();
+            }
+            buffer.put(game);
+            boolean isEnough = this.records + buffer.position() / SelfPlay.RECORD_BYTES >= this.positions;
+            if (isEnough || (System.currentTimeMillis() - lastWrite >= SelfPlay.FLUSH_MILLIS)) {
+                this.write(buffer);
+                lastWrite = System.currentTimeMillis();
+            }
+        }
+        this.write(buffer);
+    }
+
+    /**
+     * Plays a game, writing the records of its boards into a buffer.
+     */
+    private void play(AI ai, Random random, ByteBuffer game) {
+        BitBoard board = new BitBoard();
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        for (int ply = 0; ply < this.randomPlies; ply++) {
+            int count = board.genMoves(moves);
+            if (count == 0) {
+                return; // too short to be recorded
+            }
+            board.perform(moves[random.nextInt(count)]);
+        }
+
+        ai.newGame();
+        int start = game.position();
+        int result = SelfPlay.DRAW;
+        for (int ply = this.randomPlies; ply < SelfPlay.MAX_PLIES; ply++) {
+            int count = board.genMoves(moves);
+            if (count == 0) {
+                result = (board.getSide() == 0) ? SelfPlay.LOSS : SelfPlay.WIN;
+                break;
+            }
+            int move = ai.decide(board, Long.MAX_VALUE);
+            if (count > 1) { // the AI searched
+                int score = (board.getSide() == 0) ? ai.getScore() : -ai.getScore();
+                game.putInt(board.getPieces(0)).putInt(board.getPieces(1)).putInt(board.getKings())
+                        .putShort((short) score).put((byte) board.getSide()).put((byte) 0);
+            }
+            board.perform(move);
+        }
+
+        // fill in the result once it is known
+        for (int offset = start; offset < game.position(); offset += SelfPlay.RECORD_BYTES) {
+            game.put(offset + SelfPlay.RECORD_BYTES - 1, (byte) result);
+        }
+    }
+
+    /**
+     * Appends the games of a buffer to the file, forcing the file to disk if it
+     * has not been for a while, and empties the buffer.
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        synchronized (this) {
+            if (this.records < this.positions) {
+                this.records += buffer.remaining() / SelfPlay.RECORD_BYTES;
+                while (buffer.hasRemaining()) {
+                    this.channel.write(buffer);
+                }
+                long time = System.currentTimeMillis();
+                if (time - this.lastForce >= SelfPlay.FLUSH_MILLIS) {
+                    this.channel.force(false);
+                    this.lastForce = time;
+                }
+                System.out.printf("%d positions%n", this.records);
+            }
+            if (this.records >= this.positions) {
+                this.isStopped = true;
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the board of the record at the position of a buffer.
+     */
+    public static BitBoard getBoard(ByteBuffer buffer) {
+        int position = buffer.position();
+        int[] pieces = { buffer.getInt(position), buffer.getInt(position + 4) };
+        return new BitBoard(pieces, buffer.getInt(position + 8), buffer.get(position + 14));
+    }
+
+    /**
+     * Returns the score for side 0 of the record at the position of a buffer.
+     */
+    public static int getScore(ByteBuffer buffer) {
+        return buffer.getShort(buffer.position() + 12);
+    }
+
+    /**
+     * Returns the result in half points for side 0 of the record at the position
+     * of a buffer.
+     */
+    public static int getResult(ByteBuffer buffer) {
+        return buffer.get(buffer.position() + 15);
+    }
+}
\ No newline at end of file
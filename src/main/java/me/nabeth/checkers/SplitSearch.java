@@ -0,0 +1,349 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code SplitSearch} class searches a board in parallel on a fork/join
+ * pool using the Young Brothers Wait Concept: at each node the first move is
+ * searched fully before the remaining moves are searched as parallel tasks. The
+ * tasks keep narrowing their window to the latest bounds of their parent as
+ * they search, and a cutoff at any node aborts the tasks still searching below
+ * it. The moves are ordered as in {@code Search}, by captures, killer moves and
+ * history, which the threads all share. No transposition table is used, so
+ * that this back end can be compared with the threads sharing one.
+ */
+public class SplitSearch {
+    private static final int MIN_SPLIT_DEPTH = 3;
+    private static final int NODES_PER_ABORT_CHECK = 512;
+
+    private ForkJoinPool pool;
+    private Evaluator evaluator;
+    private ThreadLocal<int[][]> moveLists;
+    private ThreadLocal<int[][]> scoreLists;
+    private int[][] killers; // written by every thread, a torn entry only costing ordering
+    private int[][] history;
+    private AtomicLong nodes;
+    private long deadline;
+    private volatile boolean isStopped;
+
+    public SplitSearch(int threads) {
+        this.pool = new ForkJoinPool(Math.max(threads, 1));
+        this.evaluator = Evaluator.DEFAULT;
+        this.moveLists = new ThreadLocal<int[][]>() {
+            @Override
+            protected int[][] initialValue() {
+                return new int[Search.MAX_PLY][BitBoard.MAX_MOVES];
+            }
+        };
+        this.scoreLists = new ThreadLocal<int[][]>() {
+            @Override
+            protected int[][] initialValue() {
+                return new int[Search.MAX_PLY][BitBoard.MAX_MOVES];
+            }
+        };
+        this.killers = new int[Search.MAX_PLY][2];
+        this.history = new int[BitBoard.SQUARES][BitBoard.SQUARES];
+        this.nodes = new AtomicLong();
+    }
+
+    /**
+     * Searches a board to a given depth.
+     *
+     * @param root      the board to be searched, which is left unchanged
+     * @param depth     the depth of the search below the root moves
+     * @param firstMove the packed move to be searched first, or {@code 0}
+     * @param deadline  the system time at which searching stops, in milliseconds
+     * @return the packed best move, or {@code 0} if the search ran out of time
+     */
+    public int search(BitBoard root, int depth, int firstMove, long deadline) {
+        this.deadline = deadline;
+        this.isStopped = false;
+
+        // keep a fading memory of the previous searches
+        for (int[] fromHistory : this.history) {
+            for (int dest = 0; dest < fromHistory.length; dest++) {
+                fromHistory[dest] /= 2;
+            }
+        }
+
+        Task task = new Task(new BitBoard(root, this.evaluator), null, 0, 0, depth + 1);
+        task.firstMove = firstMove;
+        this.pool.invoke(task);
+        return (this.isStopped || task.isAborted) ? 0 : task.bestMove;
+    }
+
+    /**
+     * Makes the searches that start afterwards evaluate boards with an evaluator.
+     *
+     * @param evaluator the evaluator
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Returns the number of boards searched since this instance was created.
+     */
+    public long getNodes() {
+        return this.nodes.get();
+    }
+
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    // inner class
+    private class Task extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final BitBoard board;
+        private final Task parent;
+        private final int move; // leading from the parent to this board
+        private final int ply, depth;
+        private int alpha, beta; // guarded by this task
+        private int outerAlpha; // the part of alpha taken from the parent
+        private int maxEval, bestMove, firstMove;
+        private long nodes;
+        private boolean isAborted; // the result is incomplete and is discarded
+        private volatile boolean isCutoff;
+
+        public Task(BitBoard board, Task parent, int move, int ply, int depth) {
+            this.board = board;
+            this.parent = parent;
+            this.move = move;
+            this.ply = ply;
+            this.depth = depth;
+            this.alpha = -Search.INFINITY;
+            this.beta = Search.INFINITY;
+            this.outerAlpha = -Search.INFINITY;
+            this.maxEval = -Search.INFINITY;
+        }
+
+        @Override
+        protected Integer compute() {
+            if ((this.parent != null) && (!this.narrowWindow() || this.shouldAbort())) {
+                this.isAborted = true;
+                return 0;
+            }
+
+            int eval = this.search();
+            SplitSearch.this.nodes.addAndGet(this.nodes);
+            if (!this.isAborted && (this.parent != null)) {
+                this.parent.report(-eval, this.move);
+            }
+            return eval;
+        }
+
+        private int search() {
+            if ((this.depth < SplitSearch.MIN_SPLIT_DEPTH) && (this.parent != null)) {
+                return this.minimax(SplitSearch.this.moveLists.get(), SplitSearch.this.scoreLists.get(), this.ply,
+                        this.depth, this.alpha, this.beta);
+            }
+
+            this.nodes++;
+            int[] moves = new int[BitBoard.MAX_MOVES];
+            int count = this.board.genMoves(moves);
+            if (count == 0) {
+                return -Search.WIN + this.ply;
+            }
+            int[] scores = new int[BitBoard.MAX_MOVES];
+            Search.orderMoves(moves, scores, count, this.firstMove, SplitSearch.this.killers[this.ply],
+                    SplitSearch.this.history);
+            for (int i = 0; i < count; i++) {
+                Search.pickMove(moves, scores, count, i);
+            }
+
+            // search the eldest brother on this thread
+            Task eldest = this.createChild(moves[0]);
+            eldest.compute();
+            if ((this.parent != null) && !this.narrowWindow()) {
+                this.isAborted = true;
+                return 0;
+            }
+            if (this.isCutoff) {
+                return this.finish();
+            }
+            if (eldest.isAborted) {
+                this.isAborted = true;
+                return 0;
+            }
+            if (count == 1) {
+                return this.finish();
+            }
+
+            // search the younger brothers in parallel
+            List<Task> children = new ArrayList<>();
+            for (int i = 1; i < count; i++) {
+                children.add(this.createChild(moves[i]));
+            }
+            RecursiveTask.invokeAll(children);
+            if (this.isCutoff) {
+                return this.finish();
+            }
+            for (Task child : children) {
+                if (child.isAborted) {
+                    this.isAborted = true;
+                    return 0;
+                }
+            }
+            return this.finish();
+        }
+
+        private Task createChild(int move) {
+            BitBoard child = new BitBoard(this.board);
+            child.perform(move);
+            return new Task(child, this, move, this.ply + 1, this.depth - 1);
+        }
+
+        /**
+         * Returns the result of a split node whose children are all done.
+         */
+        private synchronized int finish() {
+            return this.maxEval;
+        }
+
+        /**
+         * Returns the evaluation of a board searched sequentially on this thread
+         * from the perspective of the player to move, or {@code 0} if the search
+         * was aborted.
+         */
+        private int minimax(int[][] moveLists, int[][] scoreLists, int ply, int depth, int alpha, int beta) {
+            this.nodes++;
+            if ((this.nodes % SplitSearch.NODES_PER_ABORT_CHECK == 0) && this.shouldAbort()) {
+                this.isAborted = true;
+                return 0; // discarded by the aborted ancestor
+            }
+
+            int[] moves = moveLists[ply];
+            int count = this.board.genMoves(moves);
+            if (count == 0) {
+                return -Search.WIN + ply;
+            }
+            if (((depth == 0) && !BitBoard.isCapture(moves[0])) || (ply == Search.MAX_PLY - 1)) {
+                return this.board.evaluate();
+            }
+
+            // keep resolving captures at the horizon
+            depth = Math.max(depth, 1);
+            int[] scores = scoreLists[ply];
+            Search.orderMoves(moves, scores, count, 0, SplitSearch.this.killers[ply], SplitSearch.this.history);
+            int maxEval = -Search.INFINITY;
+            for (int i = 0; i < count; i++) {
+                Search.pickMove(moves, scores, count, i);
+                int record = this.board.perform(moves[i]);
+                int eval = -this.minimax(moveLists, scoreLists, ply + 1, depth - 1, -beta, -alpha);
+                this.board.undo(moves[i], record);
+                if (this.isAborted) {
+                    return 0;
+                }
+                maxEval = Math.max(maxEval, eval);
+                alpha = Math.max(alpha, eval);
+
+                // take the bounds raised by the siblings of this task meanwhile
+                if (ply == this.ply) {
+                    if (!this.narrowWindow()) {
+                        this.isAborted = true;
+                        return 0;
+                    }
+                    alpha = Math.max(alpha, this.alpha);
+                    beta = Math.min(beta, this.beta);
+                }
+                if (alpha >= beta) { // prune the search
+                    Search.recordCutoff(SplitSearch.this.killers[ply], SplitSearch.this.history, depth, moves[i]);
+                    break;
+                }
+            }
+            return maxEval;
+        }
+
+        private synchronized int getAlpha() {
+            return this.alpha;
+        }
+
+        private synchronized int getBeta() {
+            return this.beta;
+        }
+
+        /**
+         * Narrows the window of this task to the latest bounds of its parent,
+         * cutting it off if its children already reached the lowered upper bound.
+         *
+         * @return whether the window given by the parent is still open, which it
+         *         is not once the parent is cut off
+         */
+        private boolean narrowWindow() {
+            int alpha = -this.parent.getBeta();
+            int beta = -this.parent.getAlpha();
+            synchronized (this) {
+                this.outerAlpha = Math.max(this.outerAlpha, alpha);
+                this.alpha = Math.max(this.alpha, alpha);
+                this.beta = Math.min(this.beta, beta);
+                if ((this.alpha >= this.beta) && (this.outerAlpha < this.beta)) {
+                    this.isCutoff = true;
+                }
+                return this.outerAlpha < this.beta;
+            }
+        }
+
+        /**
+         * Records the evaluation of a child, raising the lower bound shared with
+         * the children still searching and cutting them off if it reaches the
+         * upper bound.
+         */
+        private synchronized void report(int eval, int move) {
+            if (eval > this.maxEval) {
+                this.maxEval = eval;
+                this.bestMove = move;
+            }
+            if (eval > this.alpha) {
+                this.alpha = eval;
+                if ((this.alpha >= this.beta) && !this.isCutoff) {
+                    this.isCutoff = true;
+                    Search.recordCutoff(SplitSearch.this.killers[this.ply], SplitSearch.this.history, this.depth,
+                            move);
+                }
+            }
+        }
+
+        /**
+         * Returns whether the result of this task is no longer needed, because the
+         * search ran out of time or an ancestor was cut off.
+         */
+        private boolean shouldAbort() {
+            if (SplitSearch.this.isStopped) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= SplitSearch.this.deadline) {
+                SplitSearch.this.isStopped = true;
+                return true;
+            }
+            for (Task task = this.parent; task != null; task = task.parent) {
+                if (task.isCutoff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,436 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code Tournament} class plays games between two configurations of the
+ * {@code AI} without a user interface, one game per thread at a time, to
+ * measure the difference in strength made by a change to the engine. Each
+ * opening is played twice with the colours reversed. A game is adjudicated as
+ * soon as one side is ahead by enough material, and as a draw once it reaches
+ * a maximum length. The tournament stops early once a sequential probability
+ * ratio test decides whether the first configuration is stronger than the
+ * second by the Elo bounds of the test.
+ * <p>
+ * A configuration consists of a depth, the parameters of the selective search
+ * and the weights of the evaluation. Each AI evaluates with its own weights, so
+ * the tournament can compare two evaluations, such as tuned weights against the
+ * defaults.
+ */
+public class Tournament {
+    public static final int TABLE_MEGABYTES = 16;
+    public static final int OPENING_PLIES = 3;
+    public static final int MAX_PLIES = 300;
+    public static final int ADJUDICATION_MARGIN = 6; // counting 2 per pawn and 3 per king
+
+    // results in half points of the first configuration
+    private static final int LOSS = 0, DRAW = 1, WIN = 2;
+
+    private String[] engines; // as "<depth>[:[<search parameters file>][:<evaluation weights file>]]"
+    private Configuration[] configurations;
+    private List<BitBoard> openings;
+    private int games;
+    private long timeMillis; // per side per game, or Long.MAX_VALUE
+    private double elo0, elo1; // of the null and alternative hypotheses
+    private double lowerBound, upperBound; // of the log-likelihood ratio
+    private AtomicInteger nextGame;
+    private int[] results; // number of games with each result
+    private volatile boolean isStopped;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int games = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeMillis = Long.MAX_VALUE;
+        String openingsFile = null;
+        double elo0 = 0;
+        double elo1 = 10;
+        double alpha = 0.05;
+        double beta = 0.05;
+        List<String> engines = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-games")) {
+                    games = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-time")) {
+                    timeMillis = Long.parseLong(args[++i]);
+                } else if (args[i].equals("-openings")) {
+                    openingsFile = args[++i];
+                } else if (args[i].equals("-elo0")) {
+                    elo0 = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("-elo1")) {
+                    elo1 = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("-alpha")) {
+                    alpha = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("-beta")) {
+                    beta = Double.parseDouble(args[++i]);
+                } else {
+                    Tournament.parseConfiguration(args[i]); // validate the configuration
+                    engines.add(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e) {
+            engines.clear();
+        }
+        if (engines.size() != 2) {
+            System.err.println("Usage: Tournament [-games <games>] [-threads <threads>] [-time <milliseconds>] "
+                    + "[-openings <file>] [-elo0 <elo>] [-elo1 <elo>] [-alpha <alpha>] [-beta <beta>] "
+                    + "<depth>[:[<search parameters>][:<evaluation weights>]] "
+                    + "<depth>[:[<search parameters>][:<evaluation weights>]]");
+            System.exit(1);
+        }
+
+        try {
+            List<BitBoard> openings = (openingsFile == null) ? Tournament.generateOpenings(Tournament.OPENING_PLIES)
+                    : Tournament.readOpenings(new File(openingsFile));
+            Tournament tournament = new Tournament(engines.get(0), engines.get(1), openings, games, timeMillis);
+            tournament.setTest(elo0, elo1, alpha, beta);
+            tournament.run(threads);
+        } catch (IOException | InterruptedException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates a tournament between two configurations.
+     *
+     * @param first      the configuration whose strength is measured, as
+     *                   {@code <depth>[:[<search parameters file>][:<evaluation weights file>]]}
+     * @param second     the configuration it is measured against
+     * @param openings   the boards the games start from
+     * @param games      the maximum number of games
+     * @param timeMillis the time each side has for a game, or
+     *                   {@code Long.MAX_VALUE} to search to the full depth
+     * @throws IOException if a file of a configuration cannot be read
+     */
+    public Tournament(String first, String second, List<BitBoard> openings, int games, long timeMillis)
+            throws IOException {
+        this.engines = new String[] { first, second };
+        this.configurations = new Configuration[] { Tournament.parseConfiguration(first),
+                Tournament.parseConfiguration(second) };
+        this.openings = openings;
+        this.games = games;
+        this.timeMillis = timeMillis;
+        this.nextGame = new AtomicInteger();
+        this.results = new int[3];
+        this.setTest(0, 10, 0.05, 0.05);
+    }
+
+    /**
+     * Sets the hypotheses of the sequential probability ratio test.
+     *
+     * @param elo0  the Elo difference of the null hypothesis
+     * @param elo1  the Elo difference of the alternative hypothesis
+     * @param alpha the probability of accepting the alternative hypothesis when
+     *              the null hypothesis is true
+     * @param beta  the probability of accepting the null hypothesis when the
+     *              alternative hypothesis is true
+     */
+    public void setTest(double elo0, double elo1, double alpha, double beta) {
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Reads the files of a configuration without creating an AI. An empty or
+     * missing field keeps the default parameters or the evaluation in the
+     * resource directory, and a configuration given weights evaluates with them
+     * rather than with the neural network.
+     *
+     * @throws IllegalArgumentException if the depth is invalid
+     * @throws IOException              if a file cannot be read
+     */
+    private static Configuration parseConfiguration(String engine) throws IOException {
+        String[] fields = engine.split(":", 3);
+        int depth = Integer.parseInt(fields[0]);
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Invalid depth: " + depth);
+        }
+        try {
+            SearchParameters parameters = ((fields.length > 1) && !fields[1].isEmpty())
+                    ? new SearchParameters(fields[1]) : null;
+            Evaluator evaluator = ((fields.length > 2) && !fields[2].isEmpty())
+                    ? new Evaluator(new EvaluationWeights(fields[2]), null) : null;
+            return new Configuration(depth, parameters, evaluator);
+        } catch (NoSuchElementException e) {
+            throw new IOException("Invalid configuration: " + engine);
+        }
+    }
+
+    private static AI createAI(Configuration configuration) throws IOException {
+        AI ai = new AI(configuration.depth, Tournament.TABLE_MEGABYTES, 1);
+        if (configuration.parameters != null) {
+            SearchParameters parameters = configuration.parameters;
+            SearchParameters target = ai.getSearchParameters();
+            target.setLateMoveMinDepth(parameters.getLateMoveMinDepth());
+            target.setLateMoveMinIndex(parameters.getLateMoveMinIndex());
+            target.setLateMoveReduction(parameters.getLateMoveReduction());
+            target.setFutilityMaxDepth(parameters.getFutilityMaxDepth());
+            target.setFutilityMargin(parameters.getFutilityMargin());
+        }
+        if (configuration.evaluator != null) { // shared by the threads, as it never changes
+            ai.useEvaluator(configuration.evaluator);
+        }
+        ai.useOpeningBook(null); // the openings are given
+        return ai;
+    }
+
+    /**
+     * Returns every distinct board reached from the starting board by a number of
+     * plies, in a fixed random order.
+     */
+    public static List<BitBoard> generateOpenings(int plies) {
+        Map<Long, BitBoard> boards = new LinkedHashMap<>();
+        boards.put(0L, new BitBoard());
+        for (int ply = 0; ply < plies; ply++) {
+            Map<Long, BitBoard> children = new LinkedHashMap<>();
+            int[] moves = new int[BitBoard.MAX_MOVES];
+            for (BitBoard board : boards.values()) {
+                int count = board.genMoves(moves);
+                for (int i = 0; i < count; i++) {
+                    BitBoard child = new BitBoard(board);
+                    child.perform(moves[i]);
+                    if (child.hasMoves()) {
+                        children.put(child.getKey(), child);
+                    }
+                }
+            }
+            boards = children;
+        }
+        List<BitBoard> openings = new ArrayList<>(boards.values());
+        Collections.shuffle(openings, new Random(0));
+        return openings;
+    }
+
+    /**
+     * Reads boards in FEN from a file, one per line.
+     */
+    public static List<BitBoard> readOpenings(File file) throws IOException {
+        List<BitBoard> openings = new ArrayList<>();
+        try (Scanner input = new Scanner(file)) {
+            while (input.hasNextLine()) {
+                String line = input.nextLine().trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    openings.add(BitBoard.fromFen(line));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid opening: " + line);
+                }
+            }
+        }
+        if (openings.isEmpty()) {
+            throw new IOException("No openings in " + file);
+        }
+        return openings;
+    }
+
+    /**
+     * Plays the games of the tournament and prints the result of each, until
+     * every game is played or the test is decided.
+     *
+     * @param threads the number of games played at a time
+     */
+    public void run(int threads) throws InterruptedException {
+        Thread[] players = new Thread[Math.max(threads, 1)];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Tournament.this.playGames();
+                    } catch (IOException e) {
+                        System.err.println(e.getMessage());
+                        Tournament.this.isStopped = true;
+                    }
+                }
+            };
+            players[i].start();
+        }
+        for (Thread player : players) {
+            player.join();
+        }
+
+        double llr = this.getLogLikelihoodRatio();
+        if (llr >= this.upperBound) {
+            System.out.printf("H1 accepted: %s is stronger by %.1f Elo rather than %.1f%n", this.engines[0],
+                    this.elo1, this.elo0);
+        } else if (llr <= this.lowerBound) {
+            System.out.printf("H0 accepted: %s is stronger by %.1f Elo rather than %.1f%n", this.engines[0],
+                    this.elo0, this.elo1);
+        } else {
+            System.out.println("Inconclusive");
+        }
+    }
+
+    /**
+     * Plays games on this thread, each configuration keeping its own AI.
+     */
+    private void playGames() throws IOException {
+        AI[] players = { Tournament.createAI(this.configurations[0]),
+                Tournament.createAI(this.configurations[1]) };
+        while (!this.isStopped) {
+            int game = this.nextGame.getAndIncrement();
+            if (game >= this.games) {
+                break;
+            }
+            this.record(game, this.play(players, game));
+        }
+    }
+
+    /**
+     * Plays a game from the opening of its pair of games, the first
+     * configuration playing side 0 in the first game of the pair and side 1 in
+     * the second.
+     *
+     * @return the result of the first configuration
+     */
+    private int play(AI[] players, int game) {
+        BitBoard board = new BitBoard(this.openings.get((game / 2) % this.openings.size()));
+        int firstSide = game % 2;
+        players[0].newGame();
+        players[1].newGame();
+        long[] clocks = { this.timeMillis, this.timeMillis };
+
+        for (int ply = 0; ply < Tournament.MAX_PLIES; ply++) {
+            int side = board.getSide();
+            if (!board.hasMoves()) {
+                return (side == firstSide) ? Tournament.LOSS : Tournament.WIN;
+            }
+            int material = Tournament.getMaterial(board, firstSide);
+            if (Math.abs(material) >= Tournament.ADJUDICATION_MARGIN) {
+                return (material > 0) ? Tournament.WIN : Tournament.LOSS;
+            }
+
+            AI player = players[(side == firstSide) ? 0 : 1];
+            long startTime = System.currentTimeMillis();
+            int move = player.decide(board, clocks[side]);
+            if (this.timeMillis != Long.MAX_VALUE) {
+                clocks[side] -= System.currentTimeMillis() - startTime;
+                if (clocks[side] < 0) { // lost on time
+                    return (side == firstSide) ? Tournament.LOSS : Tournament.WIN;
+                }
+            }
+            board.perform(move);
+        }
+        return Tournament.DRAW;
+    }
+
+    /**
+     * Returns the material of a side minus that of its opponent, counting 2 per
+     * pawn and 3 per king.
+     */
+    private static int getMaterial(BitBoard board, int side) {
+        int own = board.getPieces(side);
+        int opp = board.getPieces(side ^ 1);
+        int kings = board.getKings();
+        return 2 * (Integer.bitCount(own) - Integer.bitCount(opp)) + Integer.bitCount(own & kings)
+                - Integer.bitCount(opp & kings);
+    }
+
+    private synchronized void record(int game, int result) {
+        this.results[result]++;
+        int wins = this.results[Tournament.WIN];
+        int draws = this.results[Tournament.DRAW];
+        int losses = this.results[Tournament.LOSS];
+        int played = wins + draws + losses;
+        double llr = this.getLogLikelihoodRatio();
+        System.out.printf("Game %d: %s, +%d =%d -%d, Elo %+.1f, LLR %.2f (%.2f, %.2f)%n", game + 1,
+                (result == Tournament.WIN) ? "win" : (result == Tournament.DRAW) ? "draw" : "loss", wins, draws,
+                losses, Tournament.toElo((wins + draws / 2.0) / played, played), llr, this.lowerBound, this.upperBound);
+        if ((llr >= this.upperBound) || (llr <= this.lowerBound)) {
+            this.isStopped = true;
+        }
+    }
+
+    /**
+     * Returns the log-likelihood ratio of the alternative hypothesis to the null
+     * hypothesis given the results so far, approximating the distribution of the
+     * mean score of a game by a normal distribution.
+     */
+    private synchronized double getLogLikelihoodRatio() {
+        int played = this.results[Tournament.WIN] + this.results[Tournament.DRAW] + this.results[Tournament.LOSS];
+        if (played == 0) {
+            return 0;
+        }
+        double mean = 0;
+        for (int result = 0; result < 3; result++) {
+            mean += this.results[result] * result / 2.0;
+        }
+        mean /= played;
+        double variance = 0;
+        for (int result = 0; result < 3; result++) {
+            variance += this.results[result] * Math.pow(result / 2.0 - mean, 2);
+        }
+        variance /= played;
+        if (variance == 0) {
+            return 0;
+        }
+        double score0 = Tournament.toScore(this.elo0);
+        double score1 = Tournament.toScore(this.elo1);
+        return played * (score1 - score0) * (2 * mean - score0 - score1) / (2 * variance);
+    }
+
+    /**
+     * Returns the expected score of a game for an Elo difference.
+     */
+    private static double toScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Returns the Elo difference of a mean score, clamped to half a game from
+     * either end so that a perfect score gives a finite bound.
+     */
+    private static double toElo(double score, int played) {
+        double margin = 1 / (2.0 * played);
+        score = Math.max(margin, Math.min(score, 1 - margin));
+        return 400 * Math.log10(score / (1 - score));
+    }
+
+    // inner class
+    private static class Configuration {
+        private final int depth;
+        private final SearchParameters parameters; // or null for the defaults
+        private final Evaluator evaluator; // or null for the resource directory
+
+        public Configuration(int depth, SearchParameters parameters, Evaluator evaluator) {
+            this.depth = depth;
+            this.parameters = parameters;
+            this.evaluator = evaluator;
+        }
+    }
+}
\ No newline at end of file
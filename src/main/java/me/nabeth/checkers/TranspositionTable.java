@@ -0,0 +1,148 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+/**
+ * The {@code TranspositionTable} class stores the results of searched board
+ * states by their Zobrist key within a fixed amount of memory. Each entry is
+ * packed into two {@code long}s, and entries are grouped into buckets of a
+ * depth-preferred slot and an always-replace slot.
+ * <p>
+ * The table is shared between search threads without locking: the key of each
+ * entry is stored XORed with its data, so an entry torn by two threads writing
+ * it at once no longer matches its key and is treated as missing.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_SIZE = 2;
+
+    // packed entry layout
+    private static final int SCORE_SHIFT = 32, DEPTH_SHIFT = 48, BOUND_SHIFT = 56, AGE_SHIFT = 58;
+    private static final int AGE_MASK = 0x3F;
+
+    private long[] keys; // XORed with data
+    private long[] data;
+    private int mask; // number of buckets - 1
+    private volatile int age;
+
+    /**
+     * Creates a table using at most the given amount of memory, rounded down to a
+     * power of two number of buckets.
+     *
+     * @param megabytes the memory budget of the table
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max((long) megabytes << 20, 1 << 10) / TranspositionTable.ENTRY_BYTES;
+        int buckets = Integer.highestOneBit((int) Math.min(entries / TranspositionTable.BUCKET_SIZE, 1 << 29));
+        this.keys = new long[buckets * TranspositionTable.BUCKET_SIZE];
+        this.data = new long[buckets * TranspositionTable.BUCKET_SIZE];
+        this.mask = buckets - 1;
+    }
+
+    public static int getMove(long entry) {
+        return (int) entry;
+    }
+
+    public static int getScore(long entry) {
+        return (short) (entry >>> TranspositionTable.SCORE_SHIFT);
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> TranspositionTable.DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int getBound(long entry) {
+        return (int) (entry >>> TranspositionTable.BOUND_SHIFT) & 3;
+    }
+
+    private static int getAge(long entry) {
+        return (int) (entry >>> TranspositionTable.AGE_SHIFT) & TranspositionTable.AGE_MASK;
+    }
+
+    private int getIndex(long key) {
+        return ((int) key & this.mask) * TranspositionTable.BUCKET_SIZE;
+    }
+
+    /**
+     * Looks up the entry stored for a board state.
+     *
+     * @param key the Zobrist key of the board
+     * @return the packed entry, or {@code 0} if the board is not stored
+     */
+    public long probe(long key) {
+        int index = this.getIndex(key);
+        for (int i = index; i < index + TranspositionTable.BUCKET_SIZE; i++) {
+            long entry = this.data[i];
+            if ((this.keys[i] ^ entry) == key) {
+                return entry;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of searching a board state, keeping the deeper result of
+     * the current search in the first slot of its bucket and any other result in
+     * the second slot.
+     *
+     * @param key   the Zobrist key of the board
+     * @param move  the packed best move found, or {@code 0} if there is none
+     * @param score the score of the board
+     * @param depth the depth the board was searched to
+     * @param bound whether the score is {@link #EXACT}, a {@link #LOWER} bound or
+     *              an {@link #UPPER} bound
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long entry = (move & 0xFFFFFFFFL) | ((score & 0xFFFFL) << TranspositionTable.SCORE_SHIFT)
+                | ((long) Math.min(depth, 0xFF) << TranspositionTable.DEPTH_SHIFT)
+                | ((long) bound << TranspositionTable.BOUND_SHIFT) | ((long) this.age << TranspositionTable.AGE_SHIFT);
+        int index = this.getIndex(key);
+        long stored = this.data[index];
+        boolean isSameKey = (this.keys[index] ^ stored) == key;
+        if (isSameKey || (TranspositionTable.getAge(stored) != this.age)
+                || (depth >= TranspositionTable.getDepth(stored))) {
+            // keep the best move of a shallower result of the same board
+            if ((move == 0) && isSameKey) {
+                entry |= stored & 0xFFFFFFFFL;
+            }
+            this.keys[index] = key ^ entry;
+            this.data[index] = entry;
+        } else {
+            this.keys[index + 1] = key ^ entry;
+            this.data[index + 1] = entry;
+        }
+    }
+
+    /**
+     * Marks the entries stored so far as belonging to a previous search, allowing
+     * them to be replaced regardless of their depth.
+     */
+    public void nextSearch() {
+        this.age = (this.age + 1) & TranspositionTable.AGE_MASK;
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.keys.length; i++) {
+            this.keys[i] = 0;
+            this.data[i] = 0;
+        }
+        this.age = 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,397 @@
+/*
+ * Checkers - multi-platform desktop checkers program
+ * Copyright © 2023 Nabeth Ghazi
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package me.nabeth.checkers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code Tuner} class fits the weights of the evaluation to the results of
+ * the games that labelled boards were taken from, without a user interface. The
+ * expected score of a board is the logistic function of its evaluation, and
+ * the weights are moved by gradient descent to minimize the mean squared error
+ * between the expected scores and the results. Since the evaluation is linear
+ * in the weights, the number of times each weight counts on each board is
+ * computed once, and each iteration evaluates every board in parallel from
+ * these counts alone. The counts are small integers, so each board takes a
+ * byte per weight and one for its phase, in chunks of a fixed number of boards
+ * so that no array grows past the limits of an int index.
+ * <p>
+ * The boards are read from a file of {@code SelfPlay} records, or from a text
+ * file with one board per line, in FEN followed by the result of the game for
+ * side 0: {@code 1-0}, {@code 0-1}, {@code 1/2-1/2} or a score between 0 and
+ * 1. Boards on which a capture is
+ * available are skipped, since their evaluation is not the one the search
+ * relies on.
+ */
+public class Tuner {
+    public static final int ITERATIONS = 1000;
+    private static final int BOARDS_PER_TASK = 1 << 14;
+    private static final int RECORDS_PER_READ = 1 << 16;
+    private static final int CHUNK_SHIFT = 20, CHUNK_BOARDS = 1 << Tuner.CHUNK_SHIFT; // boards per chunk
+    private static final int BOARD_BYTES = EvaluationWeights.COUNT + 1; // the counts, then the phase
+    // the factor of each count at each phase
+    private static final double[][] PHASE_FACTORS = new double[BitBoard.MAX_PHASE + 1][EvaluationWeights.COUNT];
+    private static final double LEARNING_RATE = 0.5; // in hundredths of a pawn per iteration
+    private static final double MOMENTUM_DECAY = 0.9, VARIANCE_DECAY = 0.999;
+    private static final double MAX_SCALE = 0.1; // of the logistic function, per hundredth of a pawn
+
+    private int boards;
+    private byte[][] terms; // counts of every weight and phase, board after board
+    private float[][] results;
+    private double scale; // of the evaluation in the logistic function
+    private ForkJoinPool pool;
+
+    static {
+        for (int phase = 0; phase <= BitBoard.MAX_PHASE; phase++) {
+            for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+                double factor = 1;
+                if (term < EvaluationWeights.RUNAWAY) {
+                    factor = (double) (EvaluationWeights.isEndgameTerm(term) ? BitBoard.MAX_PHASE - phase : phase)
+                            / BitBoard.MAX_PHASE;
+                }
+                Tuner.PHASE_FACTORS[phase][term] = factor;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int iterations = Tuner.ITERATIONS;
+        String weightsFile = null;
+        String[] files = new String[2];
+        int fileCount = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-iterations")) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-weights")) {
+                    weightsFile = args[++i];
+                } else {
+                    files[fileCount++] = args[i];
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            fileCount = 0;
+        }
+        if (fileCount != 2) {
+            System.err.println("Usage: Tuner [-threads <threads>] [-iterations <iterations>] "
+                    + "[-weights <initial weights>] <boards> <tuned weights>");
+            System.exit(1);
+        }
+
+        Tuner tuner = new Tuner(threads);
+        try {
+            EvaluationWeights weights = (weightsFile == null) ? new EvaluationWeights()
+                    : new EvaluationWeights(weightsFile);
+            tuner.read(files[0]);
+            System.out.printf("Read %d quiet boards%n", tuner.boards);
+            tuner.fitScale(weights);
+            System.out.printf("Scale %.6f, error %.6f%n", tuner.scale, tuner.getError(weights));
+            EvaluationWeights tuned = tuner.tune(weights, iterations);
+            tuned.writeToTxt(files[1]);
+            System.out.printf("Error %.6f, weights written to %s%n", tuner.getError(tuned), files[1]);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } finally {
+            tuner.pool.shutdown();
+        }
+    }
+
+    public Tuner(int threads) {
+        this.terms = new byte[0][];
+        this.results = new float[0][];
+        this.pool = new ForkJoinPool(Math.max(threads, 1));
+    }
+
+    /**
+     * Reads labelled boards from a file, adding the quiet ones to the boards
+     * being fitted.
+     *
+     * @throws IOException if the file cannot be read or a line is invalid
+     */
+    public void read(String fileName) throws IOException {
+        int[] counts = new int[EvaluationWeights.COUNT];
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        if (SelfPlay.isRecordFile(new File(fileName))) {
+            try (FileChannel input = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(Tuner.RECORDS_PER_READ * SelfPlay.RECORD_BYTES);
+                input.position(SelfPlay.RECORD_BYTES); // skip the header
+                while (input.read(buffer) > 0) {
+                    buffer.flip();
+                    while (buffer.remaining() >= SelfPlay.RECORD_BYTES) {
+                        BitBoard board = SelfPlay.getBoard(buffer);
+                        this.addIfQuiet(board, SelfPlay.getResult(buffer) / 2f, counts, moves);
+                        buffer.position(buffer.position() + SelfPlay.RECORD_BYTES);
+                    }
+                    buffer.compact();
+                }
+            }
+            return;
+        }
+
+        try (BufferedReader input = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = input.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                BitBoard board;
+                float result;
+                try {
+                    board = BitBoard.fromFen(fields[0]);
+                    result = Tuner.parseResult(fields[fields.length - 1]);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid board: " + line);
+                }
+                this.addIfQuiet(board, result, counts, moves);
+            }
+        }
+    }
+
+    private void addIfQuiet(BitBoard board, float result, int[] counts, int[] moves) {
+        int count = board.genMoves(moves);
+        if ((count > 0) && !BitBoard.isCapture(moves[0])) {
+            int phase = board.countTerms(counts);
+            this.add(counts, phase, result);
+        }
+    }
+
+    private static float parseResult(String result) {
+        switch (result) {
+            case "1-0":
+                return 1;
+            case "0-1":
+                return 0;
+            case "1/2-1/2":
+                return 0.5f;
+            default:
+                float score = Float.parseFloat(result);
+                if ((score < 0) || (score > 1)) {
+                    throw new IllegalArgumentException("Invalid result: " + result);
+                }
+                return score;
+        }
+    }
+
+    /**
+     * Adds a board to the boards being fitted.
+     *
+     * @param counts the number of times each weight counts on the board, as
+     *               written by {@link BitBoard#countTerms(int[])}
+     * @param phase  the phase of the board, as returned by
+     *               {@link BitBoard#countTerms(int[])}
+     * @param result the result of the game for side 0, between 0 and 1
+     * @throws IllegalArgumentException if a count does not fit in a byte
+     * @throws IllegalStateException    if there are already
+     *                                  {@code Integer.MAX_VALUE} boards
+     */
+    public void add(int[] counts, int phase, float result) {
+        if (this.boards == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many boards");
+        }
+        int chunk = this.boards >>> Tuner.CHUNK_SHIFT;
+        int index = this.boards & (Tuner.CHUNK_BOARDS - 1);
+        if (chunk == this.terms.length) {
+            this.terms = Arrays.copyOf(this.terms, chunk + 1);
+            this.results = Arrays.copyOf(this.results, chunk + 1);
+            this.terms[chunk] = new byte[Tuner.CHUNK_BOARDS * Tuner.BOARD_BYTES];
+            this.results[chunk] = new float[Tuner.CHUNK_BOARDS];
+        }
+        int offset = index * Tuner.BOARD_BYTES;
+        for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+            if (counts[term] != (byte) counts[term]) {
+                throw new IllegalArgumentException("Invalid count: " + counts[term]);
+            }
+            this.terms[chunk][offset + term] = (byte) counts[term];
+        }
+        this.terms[chunk][offset + EvaluationWeights.COUNT] = (byte) phase;
+        this.results[chunk][index] = result;
+        this.boards++;
+    }
+
+    /**
+     * Finds the scale of the logistic function that minimizes the error of a set
+     * of weights, by ternary search.
+     */
+    public void fitScale(EvaluationWeights weights) {
+        double low = 0;
+        double high = Tuner.MAX_SCALE;
+        for (int i = 0; i < 50; i++) {
+            double third = (high - low) / 3;
+            this.scale = low + third;
+            double lowError = this.getError(weights);
+            this.scale = high - third;
+            double highError = this.getError(weights);
+            if (lowError < highError) {
+                high -= third;
+            } else {
+                low += third;
+            }
+        }
+        this.scale = (low + high) / 2;
+    }
+
+    /**
+     * Returns the mean squared error of a set of weights over the boards.
+     */
+    public double getError(EvaluationWeights weights) {
+        return this.pool.invoke(new Pass(Tuner.toArray(weights), 0, this.boards, false))[EvaluationWeights.COUNT]
+                / this.boards;
+    }
+
+    /**
+     * Fits a set of weights to the boards with the Adam variant of gradient
+     * descent. The pawn middlegame weight is kept as it is, since it sets the
+     * unit of the evaluation along with the scale.
+     *
+     * @return the fitted weights, rounded to integers
+     */
+    public EvaluationWeights tune(EvaluationWeights initial, int iterations) {
+        double[] weights = Tuner.toArray(initial);
+        double[] momentum = new double[EvaluationWeights.COUNT];
+        double[] variance = new double[EvaluationWeights.COUNT];
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            double[] sums = this.pool.invoke(new Pass(weights, 0, this.boards, true));
+            double momentumCorrection = 1 - Math.pow(Tuner.MOMENTUM_DECAY, iteration);
+            double varianceCorrection = 1 - Math.pow(Tuner.VARIANCE_DECAY, iteration);
+            for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+                if (term == EvaluationWeights.PAWN_MG) {
+                    continue;
+                }
+                double gradient = sums[term] / this.boards;
+                momentum[term] = Tuner.MOMENTUM_DECAY * momentum[term] + (1 - Tuner.MOMENTUM_DECAY) * gradient;
+                variance[term] = Tuner.VARIANCE_DECAY * variance[term]
+                        + (1 - Tuner.VARIANCE_DECAY) * gradient * gradient;
+                weights[term] -= Tuner.LEARNING_RATE * (momentum[term] / momentumCorrection)
+                        / (Math.sqrt(variance[term] / varianceCorrection) + 1e-12);
+            }
+            if (iteration % 50 == 0) {
+                System.out.printf("Iteration %d: error %.6f%n", iteration, sums[EvaluationWeights.COUNT] / this.boards);
+            }
+        }
+
+        EvaluationWeights tuned = new EvaluationWeights();
+        for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+            tuned.set(term, (int) Math.round(weights[term]));
+        }
+        return tuned;
+    }
+
+    private static double[] toArray(EvaluationWeights weights) {
+        double[] array = new double[EvaluationWeights.COUNT];
+        for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+            array[term] = weights.get(term);
+        }
+        return array;
+    }
+
+    // inner class
+    private class Pass extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] weights;
+        private final int from, to;
+        private final boolean isGradient;
+
+        /**
+         * Creates a pass over a range of boards, summing their squared errors and,
+         * if requested, the gradient of the sum.
+         */
+        public Pass(double[] weights, int from, int to, boolean isGradient) {
+            this.weights = weights;
+            this.from = from;
+            this.to = to;
+            this.isGradient = isGradient;
+        }
+
+        /**
+         * Returns the partial derivatives of the sum of the squared errors by each
+         * weight, followed by the sum itself.
+         */
+        @Override
+        protected double[] compute() {
+            if (this.to - this.from > Tuner.BOARDS_PER_TASK) {
+                int middle = (this.from + this.to) >>> 1;
+                Pass second = new Pass(this.weights, middle, this.to, this.isGradient);
+                second.fork();
+                double[] sums = new Pass(this.weights, this.from, middle, this.isGradient).compute();
+                double[] secondSums = second.join();
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += secondSums[i];
+                }
+                return sums;
+            }
+
+            // the weights scaled by each phase, and the gradient by each count at each phase
+            double[][] weights = new double[BitBoard.MAX_PHASE + 1][EvaluationWeights.COUNT];
+            double[][] gradients = new double[BitBoard.MAX_PHASE + 1][EvaluationWeights.COUNT];
+            for (int phase = 0; phase <= BitBoard.MAX_PHASE; phase++) {
+                for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+                    weights[phase][term] = this.weights[term] * Tuner.PHASE_FACTORS[phase][term];
+                }
+            }
+
+            double[] sums = new double[EvaluationWeights.COUNT + 1];
+            double scale = Tuner.this.scale;
+            for (int board = this.from; board < this.to; board++) {
+                byte[] terms = Tuner.this.terms[board >>> Tuner.CHUNK_SHIFT];
+                int index = board & (Tuner.CHUNK_BOARDS - 1);
+                int offset = index * Tuner.BOARD_BYTES;
+                int phase = terms[offset + EvaluationWeights.COUNT];
+                double[] phaseWeights = weights[phase];
+                double eval = 0;
+                for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+                    eval += terms[offset + term] * phaseWeights[term];
+                }
+                double expected = 1 / (1 + Math.exp(-scale * eval));
+                double error = Tuner.this.results[board >>> Tuner.CHUNK_SHIFT][index] - expected;
+                sums[EvaluationWeights.COUNT] += error * error;
+                if (this.isGradient) {
+                    double factor = -2 * error * expected * (1 - expected) * scale;
+                    double[] phaseGradients = gradients[phase];
+                    for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+                        phaseGradients[term] += factor * terms[offset + term];
+                    }
+                }
+            }
+            if (this.isGradient) {
+                for (int phase = 0; phase <= BitBoard.MAX_PHASE; phase++) {
+                    for (int term = 0; term < EvaluationWeights.COUNT; term++) {
+                        sums[term] += gradients[phase][term] * Tuner.PHASE_FACTORS[phase][term];
+                    }
+                }
+            }
+            return sums;
+        }
+    }
+}
\ No newline at end of file